@@ -23,6 +23,11 @@ public class SSEService implements ApplicationRunner {
     public final ConcurrentHashMap<String, Map<String, FluxSink<Object>>> EVENTS = new ConcurrentHashMap<>();
     public final ConcurrentHashMap<String, Map<String, FluxSink<Object>>> USERS = new ConcurrentHashMap<>();
 
+    /** 是否有订阅该事件的连接 */
+    public boolean hasEvent(String event) {
+        return event != null && EVENTS.containsKey(event);
+    }
+
     public void send(String event, Object message) {
         Map<String, FluxSink<Object>> emitters = EVENTS.get(event);
         if (emitters != null) {
@@ -4,9 +4,11 @@ import io.github.yezhihao.netmc.codec.Delimiter;
 import io.github.yezhihao.netmc.codec.LengthField;
 import io.github.yezhihao.netmc.codec.MessageDecoder;
 import io.github.yezhihao.netmc.codec.MessageEncoder;
+import io.github.yezhihao.netmc.core.BusinessExecutor;
 import io.github.yezhihao.netmc.core.HandlerInterceptor;
 import io.github.yezhihao.netmc.core.HandlerMapping;
 import io.github.yezhihao.netmc.session.SessionManager;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.util.NettyRuntime;
 import io.netty.util.internal.ObjectUtil;
 
@@ -16,6 +18,7 @@ import io.netty.util.internal.ObjectUtil;
  */
 public class NettyConfig {
 
+    protected final int bossCore;
     protected final int workerCore;
     protected final int businessCore;
     protected final int readerIdleTime;
@@ -31,6 +34,13 @@ public class NettyConfig {
     protected final HandlerInterceptor handlerInterceptor;
     protected final SessionManager sessionManager;
     protected final boolean enableUDP;
+    protected final boolean nativeTransport;
+    protected final boolean virtualThread;
+    protected final int businessCapacity;
+    protected final BusinessExecutor.RejectPolicy rejectPolicy;
+    protected final boolean orderedAsync;
+    protected final boolean fusedInbound;
+    protected final WriteBufferWaterMark writeBufferWaterMark;
     protected final Server server;
     protected final String name;
 
@@ -49,6 +59,14 @@ public class NettyConfig {
                         HandlerInterceptor handlerInterceptor,
                         SessionManager sessionManager,
                         boolean enableUDP,
+                        boolean nativeTransport,
+                        int acceptorCore,
+                        boolean virtualThread,
+                        int businessCapacity,
+                        BusinessExecutor.RejectPolicy rejectPolicy,
+                        boolean orderedAsync,
+                        boolean fusedInbound,
+                        WriteBufferWaterMark writeBufferWaterMark,
                         String name
     ) {
         ObjectUtil.checkNotNull(port, "port");
@@ -66,6 +84,9 @@ public class NettyConfig {
         }
 
         int processors = NettyRuntime.availableProcessors();
+        this.nativeTransport = nativeTransport && Transport.isNativeAvailable();
+        //SO_REUSEPORT仅在原生epoll下可用，多个acceptor绑定同一端口由内核做负载均衡
+        this.bossCore = this.nativeTransport ? Math.max(1, acceptorCore) : 1;
         this.workerCore = workerGroup > 0 ? workerGroup : processors + 2;
         this.businessCore = businessGroup > 0 ? businessGroup : Math.max(1, processors >> 1);
         this.readerIdleTime = readerIdleTime;
@@ -81,6 +102,12 @@ public class NettyConfig {
         this.handlerInterceptor = handlerInterceptor;
         this.sessionManager = sessionManager != null ? sessionManager : new SessionManager();
         this.enableUDP = enableUDP;
+        this.virtualThread = virtualThread;
+        this.businessCapacity = businessCapacity;
+        this.rejectPolicy = rejectPolicy;
+        this.orderedAsync = orderedAsync;
+        this.fusedInbound = fusedInbound;
+        this.writeBufferWaterMark = writeBufferWaterMark;
 
         if (enableUDP) {
             this.name = name != null ? name : "UDP";
@@ -116,6 +143,14 @@ public class NettyConfig {
         private HandlerInterceptor handlerInterceptor;
         private SessionManager sessionManager;
         private boolean enableUDP;
+        private boolean nativeTransport;
+        private int acceptorCore = 1;
+        private boolean virtualThread;
+        private int businessCapacity;
+        private BusinessExecutor.RejectPolicy rejectPolicy = BusinessExecutor.RejectPolicy.PAUSE_READ;
+        private boolean orderedAsync;
+        private boolean fusedInbound;
+        private WriteBufferWaterMark writeBufferWaterMark;
         private String name;
 
         public Builder() {
@@ -193,6 +228,66 @@ public class NettyConfig {
             return this;
         }
 
+        /**
+         * 使用原生epoll传输(仅Linux)，不可用时回退到NIO
+         */
+        public Builder setNativeTransport(boolean nativeTransport) {
+            this.nativeTransport = nativeTransport;
+            return this;
+        }
+
+        /**
+         * 绑定同一端口的acceptor数量(SO_REUSEPORT)，仅在原生epoll下生效
+         * TCP为监听socket数量，UDP为接收socket数量(每个socket独占一个EventLoop)
+         */
+        public Builder setAcceptorCore(int acceptorCore) {
+            this.acceptorCore = acceptorCore;
+            return this;
+        }
+
+        /**
+         * 业务线程组(@Async)使用虚拟线程(JDK21+)，低版本JDK回退到平台线程
+         */
+        public Builder setVirtualThread(boolean virtualThread) {
+            this.virtualThread = virtualThread;
+            return this;
+        }
+
+        /**
+         * 业务线程组未完成任务(排队+执行中)的上限，以及超出上限时的处理策略
+         * @param capacity 小于等于0不限制
+         */
+        public Builder setBusinessQueue(int capacity, BusinessExecutor.RejectPolicy rejectPolicy) {
+            this.businessCapacity = capacity;
+            this.rejectPolicy = rejectPolicy;
+            return this;
+        }
+
+        /**
+         * 同一会话的@Async消息按到达顺序串行处理，不同会话之间并行
+         */
+        public Builder setOrderedAsync(boolean orderedAsync) {
+            this.orderedAsync = orderedAsync;
+            return this;
+        }
+
+        /**
+         * TCP入站使用合并处理器(FusedInboundHandler)，在一次channelRead中完成拆包、解码和分发
+         */
+        public Builder setFusedInbound(boolean fusedInbound) {
+            this.fusedInbound = fusedInbound;
+            return this;
+        }
+
+        /**
+         * 发送缓冲区的高低水位(字节)，超过高水位后通道不可写，会话的下行消息进入发送队列
+         * @see io.github.yezhihao.netmc.session.OutboundPolicy
+         */
+        public Builder setWriteBufferWaterMark(int low, int high) {
+            this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+            return this;
+        }
+
         public Builder setName(String name) {
             this.name = name;
             return this;
@@ -215,6 +310,14 @@ public class NettyConfig {
                     this.handlerInterceptor,
                     this.sessionManager,
                     this.enableUDP,
+                    this.nativeTransport,
+                    this.acceptorCore,
+                    this.virtualThread,
+                    this.businessCapacity,
+                    this.rejectPolicy,
+                    this.orderedAsync,
+                    this.fusedInbound,
+                    this.writeBufferWaterMark,
                     this.name
             ).build();
         }
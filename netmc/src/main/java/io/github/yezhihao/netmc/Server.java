@@ -1,11 +1,14 @@
 package io.github.yezhihao.netmc;
 
 import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -27,6 +30,11 @@ public abstract class Server {
 
     protected abstract AbstractBootstrap initialize();
 
+    /** 同一端口绑定的次数，SO_REUSEPORT模式下每个acceptor各绑定一次 */
+    protected int bindCount() {
+        return 1;
+    }
+
     public synchronized boolean start() {
         if (isRunning) {
             log.warn("==={}已经启动,port:{}===", config.name, config.port);
@@ -34,25 +42,45 @@ public abstract class Server {
         }
 
         AbstractBootstrap bootstrap = initialize();
-        ChannelFuture future = bootstrap.bind(config.port).awaitUninterruptibly();
-        future.channel().closeFuture().addListener(f -> {
-            if (isRunning) stop();
-        });
-        if (future.cause() != null)
-            log.error("启动失败", future.cause());
-
-        if (isRunning = future.isSuccess())
-            log.warn("==={}启动成功,port:{}===", config.name, config.port);
+        List<Channel> channels = new ArrayList<>(bindCount());
+        for (int i = 0; i < bindCount(); i++) {
+            ChannelFuture future = bootstrap.bind(config.port).awaitUninterruptibly();
+            if (future.cause() != null) {
+                log.error("启动失败", future.cause());
+                //关闭已绑定的socket，避免端口仍被占用并继续接收连接
+                for (Channel channel : channels)
+                    channel.close().awaitUninterruptibly();
+                shutdown();
+                return false;
+            }
+            channels.add(future.channel());
+        }
+        isRunning = true;
+        for (Channel channel : channels) {
+            channel.closeFuture().addListener(f -> {
+                if (isRunning) stop();
+            });
+        }
+        log.warn("==={}启动成功,port:{}===", config.name, config.port);
         return isRunning;
     }
 
+    /** 业务线程组，可用于获取队列深度等运行指标 */
+    public ExecutorService getBusinessGroup() {
+        return businessGroup;
+    }
+
     public synchronized void stop() {
         isRunning = false;
+        shutdown();
+        log.warn("==={}已经停止,port:{}===", config.name, config.port);
+    }
+
+    private void shutdown() {
         bossGroup.shutdownGracefully();
         if (workerGroup != null)
             workerGroup.shutdownGracefully();
         if (businessGroup != null)
             businessGroup.shutdown();
-        log.warn("==={}已经停止,port:{}===", config.name, config.port);
     }
-}
\ No newline at end of file
+}
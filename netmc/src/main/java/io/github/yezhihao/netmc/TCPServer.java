@@ -1,22 +1,19 @@
 package io.github.yezhihao.netmc;
 
+import io.github.yezhihao.netmc.core.BusinessExecutor;
 import io.github.yezhihao.netmc.handler.*;
+import io.github.yezhihao.netmc.session.IdleChecker;
 import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioChannelOption;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
 /**
  * @author yezhihao
  * https://gitee.com/yezhihao/jt808-server
@@ -28,46 +25,74 @@ public class TCPServer extends Server {
     }
 
     protected AbstractBootstrap initialize() {
-        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
-        workerGroup = new NioEventLoopGroup(config.workerCore, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
+        bossGroup = Transport.newEventLoopGroup(config.nativeTransport, config.bossCore, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
+        workerGroup = Transport.newEventLoopGroup(config.nativeTransport, config.workerCore, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
         if (config.businessCore > 0)
-            businessGroup = new ThreadPoolExecutor(config.businessCore, config.businessCore, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DefaultThreadFactory(config.name + "-B", true, Thread.NORM_PRIORITY));
-        return new ServerBootstrap()
+            businessGroup = new BusinessExecutor(config.name + "-B", config.businessCore, config.virtualThread, config.businessCapacity, config.rejectPolicy, config.orderedAsync);
+        ServerBootstrap bootstrap = new ServerBootstrap()
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .option(NioChannelOption.SO_REUSEADDR, true)
-                .option(NioChannelOption.SO_BACKLOG, 1024)
-                .childOption(NioChannelOption.TCP_NODELAY, true)
-                .childHandler(new ChannelInitializer<NioSocketChannel>() {
+                .channel(Transport.serverChannelClass(config.nativeTransport))
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<Channel>() {
 
-                    private final TCPMessageAdapter adapter = new TCPMessageAdapter(config.sessionManager);
+                    //仅检测读空闲时使用共享的时间轮，否则每个连接一个IdleStateHandler
+                    private final IdleChecker idleChecker = config.readerIdleTime > 0 && config.writerIdleTime == 0 && config.allIdleTime == 0 ?
+                            new IdleChecker(config.readerIdleTime, IdleChecker.FIRE_EVENT) : null;
+                    private final TCPMessageAdapter adapter = new TCPMessageAdapter(config.sessionManager, idleChecker);
                     private final MessageDecoderWrapper decoder = new MessageDecoderWrapper(config.decoder);
                     private final MessageEncoderWrapper encoder = new MessageEncoderWrapper(config.encoder);
                     private final DispatcherHandler dispatcher = new DispatcherHandler(config.handlerMapping, config.handlerInterceptor, businessGroup);
 
                     @Override
-                    public void initChannel(NioSocketChannel channel) {
+                    public void initChannel(Channel channel) {
+                        if (idleChecker == null)
+                            channel.pipeline().addLast(new IdleStateHandler(config.readerIdleTime, config.writerIdleTime, config.allIdleTime));
+                        if (config.fusedInbound) {
+                            channel.pipeline()
+                                    .addLast("encoder", encoder)
+                                    .addLast("inbound", new FusedInboundHandler(frameDecoder(true), adapter, decoder, dispatcher));
+                            return;
+                        }
                         channel.pipeline()
-                                .addLast(new IdleStateHandler(config.readerIdleTime, config.writerIdleTime, config.allIdleTime))
-                                .addLast("frameDecoder", frameDecoder())
+                                .addLast("frameDecoder", frameDecoder(false))
                                 .addLast("adapter", adapter)
                                 .addLast("decoder", decoder)
                                 .addLast("encoder", encoder)
                                 .addLast("dispatcher", dispatcher);
                     }
                 });
+        if (config.writeBufferWaterMark != null)
+            bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, config.writeBufferWaterMark);
+        if (config.nativeTransport)
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return bootstrap;
+    }
+
+    @Override
+    protected int bindCount() {
+        return config.bossCore;
     }
 
-    private ByteToMessageDecoder frameDecoder() {
+    /** @param fused 合并处理器只能调用netmc中的拆包器 */
+    private ByteToMessageDecoder frameDecoder(boolean fused) {
         if (config.lengthField != null) {
             if (config.delimiters != null) {
                 return new LengthFieldAndDelimiterFrameDecoder(config.maxFrameLength, config.lengthField, config.delimiters);
+            } else if (fused) {
+                int lengthFieldOffset = config.lengthField.lengthFieldOffset;
+                return new DynamicLengthFieldBasedFrameDecoder(config.maxFrameLength,
+                        buf -> lengthFieldOffset, config.lengthField.lengthFieldLength,
+                        config.lengthField.lengthAdjustment, config.lengthField.initialBytesToStrip, true);
             } else {
                 return new LengthFieldBasedFrameDecoder(config.maxFrameLength,
                         config.lengthField.lengthFieldOffset, config.lengthField.lengthFieldLength,
                         config.lengthField.lengthAdjustment, config.lengthField.initialBytesToStrip);
             }
         }
+        if (config.delimiters.length == 1 && config.delimiters[0].flag)
+            return new FlagFrameDecoder(config.maxFrameLength, config.delimiters[0]);
         return new DelimiterBasedFrameDecoder(config.maxFrameLength, config.delimiters);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package io.github.yezhihao.netmc;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 传输层实现选择，Linux下可使用原生epoll，其他平台回退到NIO
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+final class Transport {
+
+    private Transport() {
+    }
+
+    static boolean isNativeAvailable() {
+        try {
+            return Epoll.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    static EventLoopGroup newEventLoopGroup(boolean nativeTransport, int nThreads, ThreadFactory threadFactory) {
+        if (nativeTransport)
+            return new EpollEventLoopGroup(nThreads, threadFactory);
+        return new NioEventLoopGroup(nThreads, threadFactory);
+    }
+
+    static Class<? extends ServerChannel> serverChannelClass(boolean nativeTransport) {
+        if (nativeTransport)
+            return EpollServerSocketChannel.class;
+        return NioServerSocketChannel.class;
+    }
+
+    static Class<? extends DatagramChannel> datagramChannelClass(boolean nativeTransport) {
+        if (nativeTransport)
+            return EpollDatagramChannel.class;
+        return NioDatagramChannel.class;
+    }
+}
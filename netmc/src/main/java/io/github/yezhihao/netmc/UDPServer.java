@@ -1,5 +1,6 @@
 package io.github.yezhihao.netmc;
 
+import io.github.yezhihao.netmc.core.BusinessExecutor;
 import io.github.yezhihao.netmc.handler.DispatcherHandler;
 import io.github.yezhihao.netmc.handler.MessageDecoderWrapper;
 import io.github.yezhihao.netmc.handler.MessageEncoderWrapper;
@@ -7,15 +8,11 @@ import io.github.yezhihao.netmc.handler.UDPMessageAdapter;
 import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioChannelOption;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
 /**
  * @author yezhihao
  * https://gitee.com/yezhihao/jt808-server
@@ -27,23 +24,24 @@ public class UDPServer extends Server {
     }
 
     protected AbstractBootstrap initialize() {
-        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
+        bossGroup = Transport.newEventLoopGroup(config.nativeTransport, config.bossCore, new DefaultThreadFactory(config.name, Thread.MAX_PRIORITY));
         if (config.businessCore > 0)
-            businessGroup = new ThreadPoolExecutor(config.businessCore, config.businessCore, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DefaultThreadFactory(config.name + "-B", true, Thread.NORM_PRIORITY));
-        return new Bootstrap()
+            businessGroup = new BusinessExecutor(config.name + "-B", config.businessCore, config.virtualThread, config.businessCapacity, config.rejectPolicy, config.orderedAsync);
+        Bootstrap bootstrap = new Bootstrap()
                 .group(bossGroup)
-                .channel(NioDatagramChannel.class)
-                .option(NioChannelOption.SO_REUSEADDR, true)
-                .option(NioChannelOption.SO_RCVBUF, 1024 * 1024 * 50)
-                .handler(new ChannelInitializer<NioDatagramChannel>() {
+                .channel(Transport.datagramChannelClass(config.nativeTransport))
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.SO_RCVBUF, 1024 * 1024 * 50)
+                .handler(new ChannelInitializer<DatagramChannel>() {
 
+                    //所有DatagramChannel共享同一个适配器，保证同一终端无论落在哪个socket上都对应同一个会话
                     private final UDPMessageAdapter adapter = UDPMessageAdapter.newInstance(config.sessionManager, config.readerIdleTime, config.delimiters);
                     private final MessageDecoderWrapper decoder = new MessageDecoderWrapper(config.decoder);
                     private final MessageEncoderWrapper encoder = new MessageEncoderWrapper(config.encoder);
                     private final DispatcherHandler dispatcher = new DispatcherHandler(config.handlerMapping, config.handlerInterceptor, businessGroup);
 
                     @Override
-                    public void initChannel(NioDatagramChannel channel) {
+                    public void initChannel(DatagramChannel channel) {
                         channel.pipeline()
                                 .addLast("adapter", adapter)
                                 .addLast("decoder", decoder)
@@ -51,5 +49,15 @@ public class UDPServer extends Server {
                                 .addLast("dispatcher", dispatcher);
                     }
                 });
+        if (config.writeBufferWaterMark != null)
+            bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, config.writeBufferWaterMark);
+        if (config.nativeTransport)
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return bootstrap;
+    }
+
+    @Override
+    protected int bindCount() {
+        return config.bossCore;
     }
-}
\ No newline at end of file
+}
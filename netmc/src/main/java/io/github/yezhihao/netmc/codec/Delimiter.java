@@ -7,14 +7,32 @@ package io.github.yezhihao.netmc.codec;
 public class Delimiter {
     public final byte[] value;
     public final boolean strip;
+    /** 首尾标识位，帧的开始和结束使用同一个单字节分隔符(如JT/T 808的0x7e) */
+    public final boolean flag;
+    /** 标识位之间的最小长度，更短的数据视为干扰数据丢弃 */
+    public final int minFrameLength;
 
     public Delimiter(byte[] value) {
         this(value, true);
     }
 
     public Delimiter(byte[] value, boolean strip) {
+        this(value, strip, false, 1);
+    }
+
+    private Delimiter(byte[] value, boolean strip, boolean flag, int minFrameLength) {
         this.value = value;
         this.strip = strip;
+        this.flag = flag;
+        this.minFrameLength = minFrameLength;
+    }
+
+    /**
+     * 首尾标识位，TCP和UDP均使用FlagFrameDecoder拆包
+     * @param minFrameLength 标识位之间的最小长度(不含标识位)
+     */
+    public static Delimiter flag(byte value, boolean strip, int minFrameLength) {
+        return new Delimiter(new byte[]{value}, strip, true, Math.max(minFrameLength, 1));
     }
 
     public byte[] getValue() {
@@ -24,4 +42,12 @@ public class Delimiter {
     public boolean isStrip() {
         return strip;
     }
-}
\ No newline at end of file
+
+    public boolean isFlag() {
+        return flag;
+    }
+
+    public int getMinFrameLength() {
+        return minFrameLength;
+    }
+}
@@ -8,17 +8,29 @@ import io.github.yezhihao.netmc.core.handler.Handler;
 import io.github.yezhihao.netmc.core.handler.SimpleHandler;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * 消息处理映射
+ * 注册完成后生成以消息ID为下标的只读数组(16位消息ID)，通过volatile发布给IO线程，查找时无装箱和哈希
  * @author yezhihao
  * https://gitee.com/yezhihao/jt808-server
  */
 public abstract class AbstractHandlerMapping implements HandlerMapping {
 
-    private final Map<Object, Handler> handlerMap = new HashMap<>(64);
+    private static final int MAX_MESSAGE_ID = 0xFFFF;
+
+    private static final Handler[] EMPTY = new Handler[0];
+
+    private final Map<Integer, Handler> handlerMap = new HashMap<>(64);
+
+    /** 注册时整体替换，不会原地修改 */
+    private volatile Handler[] table = EMPTY;
+
+    /** 超出16位范围的消息ID */
+    private volatile Map<Integer, Handler> overflow = Collections.emptyMap();
 
     /**
      * 将Endpoint中被@Mapping标记的方法注册到映射表
@@ -39,7 +51,8 @@ public abstract class AbstractHandlerMapping implements HandlerMapping {
                 Handler handler;
 
                 if (asyncBatch != null) {
-                    handler = new AsyncBatchHandler(bean, method, desc, asyncBatch.poolSize(), asyncBatch.maxElements(), asyncBatch.maxWait());
+                    handler = new AsyncBatchHandler(bean, method, desc, asyncBatch.poolSize(), asyncBatch.maxElements(), asyncBatch.maxWait(), asyncBatch.capacity(),
+                            asyncBatch.highWaterMark(), asyncBatch.lowWaterMark(), asyncBatch.latencyBudget());
 
                 } else {
                     handler = new SimpleHandler(bean, method, desc, method.isAnnotationPresent(Async.class));
@@ -50,12 +63,37 @@ public abstract class AbstractHandlerMapping implements HandlerMapping {
                 }
             }
         }
+        freeze();
+    }
+
+    private void freeze() {
+        int maxId = -1;
+        for (Integer id : handlerMap.keySet()) {
+            if (id >= 0 && id <= MAX_MESSAGE_ID && id > maxId)
+                maxId = id;
+        }
+        Handler[] table = new Handler[maxId + 1];
+        Map<Integer, Handler> overflow = new HashMap<>();
+        for (Map.Entry<Integer, Handler> entry : handlerMap.entrySet()) {
+            int id = entry.getKey();
+            if (id >= 0 && id <= MAX_MESSAGE_ID)
+                table[id] = entry.getValue();
+            else
+                overflow.put(id, entry.getValue());
+        }
+        this.overflow = overflow.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(overflow);
+        this.table = table;
     }
 
     /**
      * 根据消息类型获取Handler
      */
     public Handler getHandler(int messageId) {
-        return handlerMap.get(messageId);
+        Handler[] table = this.table;
+        if (messageId >= 0 && messageId < table.length)
+            return table[messageId];
+        if (messageId >= 0 && messageId <= MAX_MESSAGE_ID)
+            return null;
+        return overflow.get(messageId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package io.github.yezhihao.netmc.core;
+
+import io.github.yezhihao.netmc.session.Session;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 业务线程组(@Async)
+ * 支持虚拟线程(JDK21+，低版本回退到平台线程池)，有界提交队列和拒绝策略，
+ * 以及按会话串行执行(同一终端的消息按到达顺序处理，不同终端之间并行)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class BusinessExecutor extends AbstractExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(BusinessExecutor.class);
+
+    /** 提交队列已满时的处理策略 */
+    public enum RejectPolicy {
+        /** 抛出RejectedExecutionException，由调用方处理 */
+        ABORT,
+        /** 丢弃该任务 */
+        DISCARD,
+        /**
+         * 在提交线程(IO线程)上直接执行，降低读取速度形成背压，会阻塞同一IO线程上的所有连接，不适用于阻塞的业务
+         * 串行模式下该会话仍有排队的任务时(不能插队)抛出RejectedExecutionException
+         */
+        CALLER_RUNS,
+        /** 抛出RejectedExecutionException，并暂停该连接的读取(autoRead=false)，未完成任务回落到容量的一半以下后恢复 */
+        PAUSE_READ
+    }
+
+    private final ExecutorService delegate;
+    private final boolean virtual;
+    private final int capacity;
+    private final Semaphore permits;
+    private final RejectPolicy rejectPolicy;
+    private final boolean ordered;
+    /** 因PAUSE_READ暂停读取的连接 */
+    private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder pauseCount = new LongAdder();
+
+    /**
+     * @param name         线程名前缀
+     * @param poolSize     平台线程数量(虚拟线程模式下忽略)
+     * @param virtual      是否使用虚拟线程，当前JDK不支持时回退到平台线程
+     * @param capacity     未完成任务(排队+执行中)的上限，小于等于0不限制
+     * @param rejectPolicy 超出上限时的处理策略
+     * @param ordered      是否按会话串行执行
+     */
+    public BusinessExecutor(String name, int poolSize, boolean virtual, int capacity, RejectPolicy rejectPolicy, boolean ordered) {
+        ExecutorService executor = null;
+        if (virtual) {
+            executor = newVirtualThreadExecutor(name);
+            if (executor == null)
+                log.warn("当前JDK不支持虚拟线程,回退到平台线程池:{}", name);
+        }
+        if (executor == null)
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DefaultThreadFactory(name, true, Thread.NORM_PRIORITY));
+
+        this.delegate = executor;
+        this.virtual = virtual && !(executor instanceof ThreadPoolExecutor);
+        this.capacity = capacity;
+        this.permits = capacity > 0 ? new Semaphore(capacity) : null;
+        this.rejectPolicy = rejectPolicy != null ? rejectPolicy : RejectPolicy.PAUSE_READ;
+        this.ordered = ordered;
+    }
+
+    /**
+     * 提交会话相关的任务，串行模式下同一会话的任务按提交顺序执行
+     */
+    public void execute(Session session, Runnable task) {
+        if (!ordered || session == null) {
+            if (permits != null && !permits.tryAcquire()) {
+                rejectedCount.increment();
+                reject(session, task);
+                return;
+            }
+            submit(delegate, task);
+            return;
+        }
+        SerialExecutor lane = session.serialExecutor(delegate);
+        if (permits != null && !permits.tryAcquire()) {
+            rejectedCount.increment();
+            if (rejectPolicy == RejectPolicy.CALLER_RUNS) {
+                if (delegate.isShutdown() || lane.tryRunInline(task))
+                    return;
+                //通道中有排队的任务，为保证顺序不能插队，也不能在许可之外排队，拒绝该任务
+                throw new RejectedExecutionException("业务线程组繁忙, capacity:" + capacity);
+            }
+            reject(session, task);
+            return;
+        }
+        submit(lane, task);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(null, task);
+    }
+
+    /** 调用方已获取许可(不限制容量时除外)，任务完成后释放 */
+    private void submit(Executor executor, Runnable task) {
+        boolean release = permits != null;
+        queueSize.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queueSize.decrementAndGet();
+                activeCount.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeCount.decrementAndGet();
+                    completedCount.increment();
+                    if (release) {
+                        permits.release();
+                        if (!paused.isEmpty())
+                            resume();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueSize.decrementAndGet();
+            if (release)
+                permits.release();
+            throw e;
+        }
+    }
+
+    private void reject(Session session, Runnable task) {
+        switch (rejectPolicy) {
+            case DISCARD:
+                return;
+            case CALLER_RUNS:
+                if (!delegate.isShutdown())
+                    task.run();
+                return;
+            case PAUSE_READ:
+                if (session != null)
+                    pause(session.channel());
+                //继续抛出异常，由调用方应答
+            default:
+                throw new RejectedExecutionException("业务线程组繁忙, capacity:" + capacity);
+        }
+    }
+
+    private void pause(Channel channel) {
+        if (channel == null || paused.contains(channel))
+            return;
+        //先关闭读取再登记，避免与resume交错导致连接未登记却处于暂停状态
+        channel.config().setAutoRead(false);
+        if (paused.add(channel))
+            pauseCount.increment();
+        //登记前任务可能已全部完成
+        resume();
+    }
+
+    private void resume() {
+        if (permits.availablePermits() < capacity / 2)
+            return;
+        for (Channel channel : paused) {
+            if (paused.remove(channel))
+                channel.config().setAutoRead(true);
+        }
+    }
+
+    /** 等待执行的任务数 */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /** 正在执行的任务数 */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /** 已完成的任务数 */
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    /** 触发拒绝策略的次数 */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /** 因PAUSE_READ暂停读取的次数(按连接计) */
+    public long getPauseCount() {
+        return pauseCount.sum();
+    }
+
+    /** 当前被暂停读取的连接数 */
+    public int getPausedChannels() {
+        return paused.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "BusinessExecutor{virtual=" + virtual +
+                ", queueSize=" + queueSize.get() +
+                ", activeCount=" + activeCount.get() +
+                ", completedCount=" + completedCount.sum() +
+                ", rejectedCount=" + rejectedCount.sum() +
+                '}';
+    }
+
+    /** 通过反射创建虚拟线程执行器，以兼容JDK17编译 */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-v-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.yezhihao.netmc.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 串行执行通道
+ * 提交到同一通道的任务按提交顺序依次执行，不同通道之间在共享线程池上并行，互不阻塞
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class SerialExecutor implements Executor, Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(SerialExecutor.class);
+
+    /** 单次调度最多执行的任务数，超出后让出线程，避免单个通道长期占用 */
+    private static final int MAX_BATCH = 64;
+
+    private final Executor parent;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public SerialExecutor(Executor parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            tasks.remove(task);
+            throw e;
+        }
+    }
+
+    /**
+     * 通道空闲时在当前线程直接执行
+     * @return 通道中有未完成的任务时返回false(为保证顺序不能插队)
+     */
+    public boolean tryRunInline(Runnable task) {
+        if (!tasks.isEmpty() || !scheduled.compareAndSet(false, true))
+            return false;
+        try {
+            task.run();
+        } finally {
+            scheduled.set(false);
+            if (!tasks.isEmpty())
+                schedule();
+        }
+        return true;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                parent.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            Runnable task;
+            for (int i = 0; i < MAX_BATCH && (task = tasks.poll()) != null; i++) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("串行任务执行出错", e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!tasks.isEmpty())
+                schedule();
+        }
+    }
+
+    /** 等待执行的任务数 */
+    public int size() {
+        return tasks.size();
+    }
+}
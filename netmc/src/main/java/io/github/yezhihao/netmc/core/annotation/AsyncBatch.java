@@ -21,4 +21,16 @@ public @interface AsyncBatch {
     /** 最大等待时间 */
     int maxWait() default 1000;
 
+    /** 队列容量(所有线程合计)，队列满时拒绝新消息 */
+    int capacity() default 200000;
+
+    /** 高水位(队列容量的百分比)，超过后暂停写入该队列的连接读取数据 */
+    int highWaterMark() default 80;
+
+    /** 低水位(队列容量的百分比)，回落到该值以下后恢复读取 */
+    int lowWaterMark() default 40;
+
+    /** 单批处理耗时目标(毫秒)，大于0时启用自适应批量，maxElements和maxWait作为上限 */
+    int latencyBudget() default 0;
+
 }
\ No newline at end of file
@@ -1,22 +1,34 @@
 package io.github.yezhihao.netmc.core.handler;
 
 import io.github.yezhihao.netmc.core.model.Message;
+import io.github.yezhihao.netmc.core.model.Recyclable;
 import io.github.yezhihao.netmc.session.Session;
+import io.github.yezhihao.netmc.util.MpscRingBuffer;
 import io.github.yezhihao.netmc.util.VirtualList;
+import io.netty.channel.Channel;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 异步批量处理
+ * 每个批处理线程独占一个有界环形队列，累计到maxElements条或首条消息等待超过maxWait时提交一批
+ * 消息按clientId哈希分配到固定线程，同一终端的消息始终在同一线程中按到达顺序处理，避免不同批次并发提交导致乱序
+ * 队列超过高水位时暂停写入连接的读取(autoRead=false)，回落到低水位以下后恢复，由TCP窗口向终端形成背压
+ * 设置latencyBudget后启用自适应批量(AIMD)：单批耗时在预算内且批次已满时线性增大批量，超出预算时减半，等待时间随批量等比例调整
  * @author yezhihao
  * https://gitee.com/yezhihao/jt808-server
  */
@@ -24,9 +36,16 @@ public class AsyncBatchHandler extends Handler {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncBatchHandler.class);
 
-    private final ConcurrentLinkedQueue<Message> queue;
+    private static final RejectedExecutionException QUEUE_FULL = new RejectedExecutionException("批处理队列已满") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private final Worker[] workers;
 
-    private final ExecutorService executor;
+    private final AtomicInteger next = new AtomicInteger();
 
     private final int poolSize;
 
@@ -34,9 +53,38 @@ public class AsyncBatchHandler extends Handler {
 
     private final int maxWait;
 
+    private final int latencyBudget;
+
+    private final int minElements;
+
+    private final int step;
+
     private final int warningLines;
 
-    public AsyncBatchHandler(Object actionClass, Method actionMethod, String desc, int poolSize, int maxElements, int maxWait) {
+    private final int highWaterMark;
+
+    private final int lowWaterMark;
+
+    private final LongAdder droppedCount = new LongAdder();
+    /** 上次记录丢弃日志的时间，队列已满时每5秒最多记录一次 */
+    private final AtomicLong dropLogTime = new AtomicLong();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder elementCount = new LongAdder();
+    private final LongAdder flushTime = new LongAdder();
+    private final AtomicLong maxFlushTime = new AtomicLong();
+    private final LongAdder pauseCount = new LongAdder();
+    private final LongAdder pausedTime = new LongAdder();
+    private final LongAdder increaseCount = new LongAdder();
+    private final LongAdder decreaseCount = new LongAdder();
+
+    /**
+     * @param capacity      队列容量(所有线程合计)
+     * @param highWaterMark 高水位，队列容量的百分比
+     * @param lowWaterMark  低水位，队列容量的百分比
+     * @param latencyBudget 单批处理耗时目标(毫秒)，大于0时启用自适应批量，maxElements和maxWait作为上限
+     */
+    public AsyncBatchHandler(Object actionClass, Method actionMethod, String desc, int poolSize, int maxElements, int maxWait, int capacity,
+                             int highWaterMark, int lowWaterMark, int latencyBudget) {
         super(actionClass, actionMethod, desc);
 
         Class<?>[] parameterTypes = actionMethod.getParameterTypes();
@@ -44,76 +92,322 @@ public class AsyncBatchHandler extends Handler {
             throw new RuntimeException("@AsyncBatch方法仅支持一个List参数:" + actionMethod);
         if (!parameterTypes[0].isAssignableFrom(List.class))
             throw new RuntimeException("@AsyncBatch方法的参数不是List类型:" + actionMethod);
+        if (lowWaterMark < 0 || highWaterMark > 100 || lowWaterMark >= highWaterMark)
+            throw new RuntimeException("@AsyncBatch水位设置错误,应满足0 <= lowWaterMark < highWaterMark <= 100:" + actionMethod);
 
         this.poolSize = poolSize;
         this.maxElements = maxElements;
         this.maxWait = maxWait;
-        this.warningLines = maxElements * poolSize * 50;
-
-        this.queue = new ConcurrentLinkedQueue<>();
-        this.executor = Executors.newFixedThreadPool(this.poolSize, new DefaultThreadFactory(actionMethod.getName(), true, Thread.NORM_PRIORITY));
+        this.latencyBudget = latencyBudget;
+        this.minElements = Math.max(1, maxElements / 64);
+        this.step = Math.max(1, maxElements / 32);
 
+        int workerCapacity = Math.max(maxElements, capacity / poolSize);
+        this.workers = new Worker[poolSize];
+        ThreadFactory threadFactory = new DefaultThreadFactory(actionMethod.getName(), true, Thread.NORM_PRIORITY);
         for (int i = 0; i < poolSize; i++) {
-            boolean master = i == 0;
-            executor.execute(() -> {
-                try {
-                    startInternal(master);
-                } catch (Exception e) {
-                    log.error("批处理线程出错", e);
-                }
-            });
+            Worker worker = new Worker(i == 0, workerCapacity);
+            worker.thread = threadFactory.newThread(worker);
+            workers[i] = worker;
         }
+        int queueCapacity = workers[0].queue.capacity();
+        this.warningLines = queueCapacity * poolSize / 4 * 3;
+        this.highWaterMark = (int) ((long) queueCapacity * highWaterMark / 100);
+        this.lowWaterMark = (int) ((long) queueCapacity * lowWaterMark / 100);
+        for (Worker worker : workers)
+            worker.thread.start();
     }
 
     public <T extends Message> T invoke(T request, Session session) {
-        queue.offer(request);
+        Worker worker = workers[index(request)];
+        //可回收的消息在批处理完成前由队列持有
+        if (request instanceof Recyclable)
+            ((Recyclable) request).retain();
+        if (!worker.offer(request)) {
+            Recyclable.release(request);
+            droppedCount.increment();
+            long now = System.currentTimeMillis();
+            long last = dropLogTime.get();
+            if (now - last >= 5000L && dropLogTime.compareAndSet(last, now))
+                log.warn("批处理队列已满,累计丢弃{}条", droppedCount.sum());
+            throw QUEUE_FULL;
+        }
+        if (session != null && worker.queue.size() > highWaterMark)
+            worker.pause(session.channel());
         return null;
     }
 
-    public void startInternal(boolean master) {
-        Message[] array = new Message[maxElements];
-        long logtime = 0;
-        long starttime = 0;
+    /** 按clientId分片，无clientId的消息轮询分配 */
+    private int index(Message request) {
+        if (poolSize == 1)
+            return 0;
+        String clientId = request.getClientId();
+        if (clientId == null)
+            return (next.getAndIncrement() & Integer.MAX_VALUE) % poolSize;
+        int h = clientId.hashCode();
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % poolSize;
+    }
+
+    private long flush(Message[] array, int size) {
+        long starttime = System.nanoTime();
+        try {
+            invoker.invoke(new VirtualList<>(array, size), null);
+        } catch (Throwable e) {
+            log.error(targetMethod.getName(), e);
+        }
+        long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - starttime);
+        batchCount.increment();
+        elementCount.add(size);
+        flushTime.add(time);
+        maxFlushTime.accumulateAndGet(time, Math::max);
+        if (time > 1000L)
+            log.warn("批处理耗时:{}ms,共{}条记录", time, size);
+        for (int i = 0; i < size; i++)
+            Recyclable.release(array[i]);
+        Arrays.fill(array, 0, size, null);
+        return time;
+    }
+
+    /** 队列中等待处理的消息数 */
+    public int getQueueSize() {
+        int size = 0;
+        for (Worker worker : workers)
+            size += worker.queue.size();
+        return size;
+    }
+
+    /** 队列已满被拒绝的消息数 */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /** 已提交的批次数 */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /** 已处理的消息数 */
+    public long getElementCount() {
+        return elementCount.sum();
+    }
+
+    /** 平均每批消息数 */
+    public double getAverageBatchSize() {
+        long count = batchCount.sum();
+        return count == 0 ? 0 : (double) elementCount.sum() / count;
+    }
+
+    /** 平均每批处理耗时(毫秒) */
+    public double getAverageFlushTime() {
+        long count = batchCount.sum();
+        return count == 0 ? 0 : (double) flushTime.sum() / count;
+    }
+
+    /** 单批最大处理耗时(毫秒) */
+    public long getMaxFlushTime() {
+        return maxFlushTime.get();
+    }
+
+    /** 因队列超过高水位暂停读取的次数(按连接计) */
+    public long getPauseCount() {
+        return pauseCount.sum();
+    }
+
+    /** 队列处于暂停读取状态的累计时长(毫秒)，含进行中的暂停 */
+    public long getPausedTime() {
+        long time = pausedTime.sum();
+        long now = System.nanoTime();
+        for (Worker worker : workers) {
+            long start = worker.pauseStart;
+            if (start != 0L)
+                time += TimeUnit.NANOSECONDS.toMillis(now - start);
+        }
+        return time;
+    }
 
-        for (; ; ) {
-            Message temp;
-            int i = 0;
-            while ((temp = queue.poll()) != null) {
-                array[i++] = temp;
-                if (i >= maxElements)
-                    break;
+    public boolean isAdaptive() {
+        return latencyBudget > 0;
+    }
+
+    /** 当前批量上限(各线程平均) */
+    public int getBatchLimit() {
+        long limit = 0;
+        for (Worker worker : workers)
+            limit += worker.limit;
+        return (int) (limit / poolSize);
+    }
+
+    /** 当前最大等待时间(毫秒，各线程平均) */
+    public long getBatchWait() {
+        long wait = 0;
+        for (Worker worker : workers)
+            wait += worker.waitNanos;
+        return TimeUnit.NANOSECONDS.toMillis(wait / poolSize);
+    }
+
+    /** 自适应增大批量的次数 */
+    public long getIncreaseCount() {
+        return increaseCount.sum();
+    }
+
+    /** 自适应减小批量的次数 */
+    public long getDecreaseCount() {
+        return decreaseCount.sum();
+    }
+
+    /** 当前被暂停读取的连接数 */
+    public int getPausedChannels() {
+        int size = 0;
+        for (Worker worker : workers)
+            size += worker.paused.size();
+        return size;
+    }
+
+    private final class Worker implements Runnable {
+
+        private static final int RUNNING = 0;
+        /** 队列为空，等待第一条消息 */
+        private static final int IDLE = 1;
+        /** 批次未满，等待凑满或超时 */
+        private static final int WAITING = 2;
+
+        private final boolean master;
+        private final MpscRingBuffer<Message> queue;
+        private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+        private volatile long pauseStart;
+        private volatile Thread thread;
+        private volatile int state = RUNNING;
+        /** 当前批量上限 */
+        private volatile int limit = maxElements;
+        /** 当前最大等待时间 */
+        private volatile long waitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+        /** 本批已从队列中取出的消息数 */
+        private volatile int drained;
+
+        private Worker(boolean master, int capacity) {
+            this.master = master;
+            this.queue = new MpscRingBuffer<>(capacity);
+        }
+
+        private boolean offer(Message message) {
+            if (!queue.offer(message))
+                return false;
+            int s = state;
+            if (s == IDLE || (s == WAITING && queue.size() + drained >= limit))
+                LockSupport.unpark(thread);
+            return true;
+        }
+
+        private void pause(Channel channel) {
+            if (paused.contains(channel))
+                return;
+            //先关闭读取再登记，避免与resume交错导致连接未登记却处于暂停状态
+            channel.config().setAutoRead(false);
+            if (!paused.add(channel))
+                return;
+            pauseCount.increment();
+            synchronized (paused) {
+                if (pauseStart == 0L)
+                    pauseStart = System.nanoTime();
             }
+            //确保消费者在队列回落后能看到该连接并恢复读取
+            LockSupport.unpark(thread);
+        }
 
-            if (i > 0) {
-                starttime = System.currentTimeMillis();
-                try {
-                    targetMethod.invoke(targetObject, new VirtualList<>(array, i));
-                } catch (InvocationTargetException e) {
-                    log.error(targetMethod.getName(), e.getTargetException());
-                } catch (Exception e) {
-                    log.error(targetMethod.getName(), e);
+        private void resume() {
+            for (Channel channel : paused) {
+                paused.remove(channel);
+                channel.config().setAutoRead(true);
+            }
+            synchronized (paused) {
+                long start = pauseStart;
+                if (start != 0L && paused.isEmpty()) {
+                    pausedTime.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    pauseStart = 0L;
                 }
-                long time = System.currentTimeMillis() - starttime;
-                if (time > 1000L)
-                    log.warn("批处理耗时:{}ms,共{}条记录", time, i);
             }
+        }
+
+        /** 根据本批耗时调整批量上限(加性增、乘性减) */
+        private void adjust(int size, long time) {
+            int limit = this.limit;
+            if (time > latencyBudget) {
+                if (limit <= minElements)
+                    return;
+                limit = Math.max(minElements, limit / 2);
+                decreaseCount.increment();
+            } else if (size >= limit && limit < maxElements) {
+                limit = Math.min(maxElements, limit + step);
+                increaseCount.increment();
+            } else {
+                return;
+            }
+            this.limit = limit;
+            this.waitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait) * limit / maxElements;
+        }
+
+        @Override
+        public void run() {
+            Message[] array = new Message[maxElements];
+            long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+            boolean adaptive = latencyBudget > 0;
+            long deadline = 0L;
+            long logtime = 0L;
+            int size = 0;
 
-            if (i < maxElements) {
+            for (; ; ) {
                 try {
-                    Arrays.fill(array, null);
-                    Thread.sleep(maxWait);
-                } catch (InterruptedException ignored) {
-                }
-            } else if (master) {
-                if (logtime < starttime) {
-                    logtime = starttime + 5000L;
+                    int prevSize = size;
+                    int limit = this.limit;
+                    size += queue.drain(array, size, limit - size);
+
+                    if (!paused.isEmpty() && queue.size() < lowWaterMark)
+                        resume();
 
-                    int size = queue.size();
-                    if (size > warningLines) {
-                        log.warn("批处理队列繁忙, size:{}", size);
+                    if (size > 0) {
+                        long now = System.nanoTime();
+                        if (prevSize == 0)
+                            deadline = now + waitNanos;
+
+                        if (size >= limit || now - deadline >= 0) {
+                            long time = flush(array, size);
+                            if (adaptive)
+                                adjust(size, time);
+                            size = 0;
+                            if (master)
+                                logtime = checkBusy(logtime);
+                            continue;
+                        }
+                        //先发布已取出的数量再进入等待，生产者据此判断批次是否凑满
+                        drained = size;
+                        state = WAITING;
+                        if (queue.size() + size < limit)
+                            LockSupport.parkNanos(this, deadline - now);
+                    } else {
+                        state = IDLE;
+                        if (queue.isEmpty())
+                            LockSupport.parkNanos(this, maxWaitNanos);
                     }
+                    state = RUNNING;
+                    drained = 0;
+                    Thread.interrupted();
+                } catch (Throwable e) {
+                    log.error("批处理线程出错", e);
+                }
+            }
+        }
+
+        private long checkBusy(long logtime) {
+            long now = System.currentTimeMillis();
+            if (logtime < now) {
+                int size = getQueueSize();
+                if (size > warningLines) {
+                    log.warn("批处理队列繁忙, size:{}", size);
                 }
+                return now + 5000L;
             }
+            return logtime;
         }
     }
-}
\ No newline at end of file
+}
@@ -22,6 +22,7 @@ public abstract class Handler {
     public final boolean returnVoid;
     public final boolean async;
     public final String desc;
+    protected final Invoker invoker;
 
     public Handler(Object targetObject, Method targetMethod, String desc) {
         this(targetObject, targetMethod, desc, false);
@@ -56,23 +57,11 @@ public abstract class Handler {
             throw new RuntimeException(e);
         }
         this.parameterTypes = parameterTypes;
+        this.invoker = InvokerFactory.create(targetObject, targetMethod, parameterTypes);
     }
 
     public <T extends Message> T invoke(T request, Session session) throws Exception {
-        Object[] args = new Object[parameterTypes.length];
-
-        for (int i = 0; i < parameterTypes.length; i++) {
-            int type = parameterTypes[i];
-            switch (type) {
-                case Handler.MESSAGE:
-                    args[i] = request;
-                    break;
-                case Handler.SESSION:
-                    args[i] = session;
-                    break;
-            }
-        }
-        return (T) targetMethod.invoke(targetObject, args);
+        return (T) invoker.invoke(request, session);
     }
 
     @Override
@@ -0,0 +1,17 @@
+package io.github.yezhihao.netmc.core.handler;
+
+/**
+ * 处理方法调用入口，注册时根据参数类型(MESSAGE/SESSION)生成，调用时不再分配参数数组
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+@FunctionalInterface
+public interface Invoker {
+
+    /**
+     * @param request 消息(批量处理时为消息列表)
+     * @param session 会话
+     * @return 方法返回值，void方法返回null
+     */
+    Object invoke(Object request, Object session) throws Exception;
+}
@@ -0,0 +1,161 @@
+package io.github.yezhihao.netmc.core.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 通过LambdaMetafactory为处理方法生成直接调用点，不满足条件(非public、参数超过2个、返回基本类型)时回退到反射
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+final class InvokerFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(InvokerFactory.class);
+
+    interface F0 {
+        Object apply();
+    }
+
+    interface F1 {
+        Object apply(Object a);
+    }
+
+    interface F2 {
+        Object apply(Object a, Object b);
+    }
+
+    interface V0 {
+        void apply();
+    }
+
+    interface V1 {
+        void apply(Object a);
+    }
+
+    interface V2 {
+        void apply(Object a, Object b);
+    }
+
+    private static final Class<?>[] FUNCTIONS = {F0.class, F1.class, F2.class};
+    private static final Class<?>[] CONSUMERS = {V0.class, V1.class, V2.class};
+
+    private InvokerFactory() {
+    }
+
+    static Invoker create(Object target, Method method, int[] parameterTypes) {
+        int count = parameterTypes.length;
+        Class<?> returnType = method.getReturnType();
+        boolean returnVoid = returnType == void.class;
+        if (count <= 2 && (returnVoid || !returnType.isPrimitive())
+                && Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            try {
+                Object function = metafactory(target, method, returnVoid);
+                return returnVoid ? consumer(function, parameterTypes) : function(function, parameterTypes);
+            } catch (Throwable e) {
+                log.warn("生成调用点失败,使用反射调用:{}", method, e);
+            }
+        }
+        return reflective(target, method, parameterTypes);
+    }
+
+    private static Object metafactory(Object target, Method method, boolean returnVoid) throws Throwable {
+        int count = method.getParameterCount();
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?> samClass = returnVoid ? CONSUMERS[count] : FUNCTIONS[count];
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle impl = lookup.unreflect(method);
+        MethodType factoryType = isStatic ? MethodType.methodType(samClass) : MethodType.methodType(samClass, method.getDeclaringClass());
+        MethodType samType = MethodType.genericMethodType(count);
+        MethodType instantiatedType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+        if (returnVoid)
+            samType = samType.changeReturnType(void.class);
+
+        CallSite site = LambdaMetafactory.metafactory(lookup, "apply", factoryType, samType, impl, instantiatedType);
+        return isStatic ? site.getTarget().invoke() : site.getTarget().invoke(target);
+    }
+
+    private static Invoker function(Object function, int[] parameterTypes) {
+        switch (parameterTypes.length) {
+            case 0:
+                F0 f0 = (F0) function;
+                return (request, session) -> f0.apply();
+            case 1:
+                F1 f1 = (F1) function;
+                if (parameterTypes[0] == Handler.SESSION)
+                    return (request, session) -> f1.apply(session);
+                return (request, session) -> f1.apply(request);
+            default:
+                F2 f2 = (F2) function;
+                if (parameterTypes[0] == Handler.SESSION)
+                    return (request, session) -> f2.apply(session, parameterTypes[1] == Handler.SESSION ? session : request);
+                if (parameterTypes[1] == Handler.SESSION)
+                    return (request, session) -> f2.apply(request, session);
+                return (request, session) -> f2.apply(request, request);
+        }
+    }
+
+    private static Invoker consumer(Object function, int[] parameterTypes) {
+        switch (parameterTypes.length) {
+            case 0:
+                V0 v0 = (V0) function;
+                return (request, session) -> {
+                    v0.apply();
+                    return null;
+                };
+            case 1:
+                V1 v1 = (V1) function;
+                if (parameterTypes[0] == Handler.SESSION)
+                    return (request, session) -> {
+                        v1.apply(session);
+                        return null;
+                    };
+                return (request, session) -> {
+                    v1.apply(request);
+                    return null;
+                };
+            default:
+                V2 v2 = (V2) function;
+                if (parameterTypes[0] == Handler.SESSION)
+                    return (request, session) -> {
+                        v2.apply(session, parameterTypes[1] == Handler.SESSION ? session : request);
+                        return null;
+                    };
+                if (parameterTypes[1] == Handler.SESSION)
+                    return (request, session) -> {
+                        v2.apply(request, session);
+                        return null;
+                    };
+                return (request, session) -> {
+                    v2.apply(request, request);
+                    return null;
+                };
+        }
+    }
+
+    /** 反射调用，异常时抛出目标方法的原始异常 */
+    static Invoker reflective(Object target, Method method, int[] parameterTypes) {
+        if (!method.canAccess(Modifier.isStatic(method.getModifiers()) ? null : target))
+            method.setAccessible(true);
+        return (request, session) -> {
+            Object[] args = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++)
+                args[i] = parameterTypes[i] == Handler.SESSION ? session : request;
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getTargetException();
+                if (cause instanceof Exception)
+                    throw (Exception) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw e;
+            }
+        };
+    }
+}
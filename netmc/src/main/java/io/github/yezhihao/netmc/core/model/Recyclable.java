@@ -0,0 +1,24 @@
+package io.github.yezhihao.netmc.core.model;
+
+/**
+ * 可回收的消息(引用计数)
+ * 1.解码器创建的消息引用计数为1，由DispatcherHandler在处理完成(含拦截器和应答)后释放
+ * 2.批处理(@AsyncBatch)入队时retain()，批处理完成后release()
+ * 3.其他需要在处理完成后继续持有消息的地方须先retain()，不再使用时release()
+ * 4.长期持有或交给其他线程读取(如web层序列化)的消息不得使用对象池中的实例，应持有其副本
+ * 引用计数归零后消息被重置并回到对象池，之后不得再访问
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public interface Recyclable {
+
+    Recyclable retain();
+
+    /** @return 引用计数归零并已回收时返回true */
+    boolean release();
+
+    static void release(Object message) {
+        if (message instanceof Recyclable)
+            ((Recyclable) message).release();
+    }
+}
@@ -1,9 +1,11 @@
 package io.github.yezhihao.netmc.handler;
 
+import io.github.yezhihao.netmc.core.BusinessExecutor;
 import io.github.yezhihao.netmc.core.HandlerInterceptor;
 import io.github.yezhihao.netmc.core.HandlerMapping;
 import io.github.yezhihao.netmc.core.handler.Handler;
 import io.github.yezhihao.netmc.core.model.Message;
+import io.github.yezhihao.netmc.core.model.Recyclable;
 import io.github.yezhihao.netmc.session.Packet;
 import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.netmc.util.Stopwatch;
@@ -13,8 +15,9 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author yezhihao
@@ -31,6 +34,9 @@ public class DispatcherHandler extends ChannelInboundHandlerAdapter {
 
     private final ExecutorService executor;
 
+    /** 上次记录拒绝日志的时间，过载时每5秒最多记录一次 */
+    private final AtomicLong rejectLogTime = new AtomicLong();
+
     public static boolean STOPWATCH = false;
 
     private static Stopwatch s;
@@ -45,36 +51,56 @@ public class DispatcherHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public final void channelRead(ChannelHandlerContext ctx, Object msg) {
+        Packet packet = (Packet) msg;
+        dispatch(ctx, packet, packet.session, packet.message);
+    }
+
+    /**
+     * 分发消息
+     * @param packet 入站的Packet，用于承载应答，为null时仅在需要应答时创建
+     */
+    void dispatch(ChannelHandlerContext ctx, Packet packet, Session session, Message request) {
         if (STOPWATCH)
             s.increment();
 
-        Packet packet = (Packet) msg;
-        Message request = packet.message;
         Handler handler = handlerMapping.getHandler(request.getMessageId());
 
         if (handler == null) {
-            Message response = interceptor.notSupported(request, packet.session);
-            if (response != null) {
-                ctx.writeAndFlush(packet.replace(response));
-            }
+            Message response = interceptor.notSupported(request, session);
+            reply(ctx, packet, session, response);
+            Recyclable.release(request);
         } else {
             if (handler.async) {
-                executor.execute(() -> channelRead0(ctx, packet, handler));
+                try {
+                    Runnable task = () -> channelRead0(ctx, packet, session, request, handler);
+                    if (executor instanceof BusinessExecutor)
+                        ((BusinessExecutor) executor).execute(session, task);
+                    else
+                        executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    long now = System.currentTimeMillis();
+                    long last = rejectLogTime.get();
+                    if (now - last >= 5000L && rejectLogTime.compareAndSet(last, now))
+                        log.warn("业务线程组繁忙,拒绝处理:{}", e.getMessage());
+                    Message response = interceptor.exceptional(request, session, e);
+                    reply(ctx, packet, session, response);
+                    Recyclable.release(request);
+                }
             } else {
-                channelRead0(ctx, packet, handler);
+                channelRead0(ctx, packet, session, request, handler);
             }
         }
     }
 
-    private void channelRead0(ChannelHandlerContext ctx, Packet packet, Handler handler) {
-        Session session = packet.session;
-        Message request = packet.message;
+    private void channelRead0(ChannelHandlerContext ctx, Packet packet, Session session, Message request, Handler handler) {
         Message response;
         long time = System.currentTimeMillis();
 
         try {
-            if (!interceptor.beforeHandle(request, session))
+            if (!interceptor.beforeHandle(request, session)) {
+                Recyclable.release(request);
                 return;
+            }
 
             response = handler.invoke(request, session);
             if (handler.returnVoid) {
@@ -82,17 +108,23 @@ public class DispatcherHandler extends ChannelInboundHandlerAdapter {
             } else {
                 interceptor.afterHandle(request, response, session);
             }
-        } catch (InvocationTargetException e) {
-            log.warn(String.valueOf(request), e.getTargetException());
-            response = interceptor.exceptional(request, session, e.getTargetException());
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            //批处理队列已满，由处理器计数并限频记录日志，不逐条记录
+            response = interceptor.exceptional(request, session, e);
+        } catch (Throwable e) {
+            //调用点直接抛出处理方法的原始异常，Error同样需要应答和释放消息
             log.warn(String.valueOf(request), e);
             response = interceptor.exceptional(request, session, e);
         }
         time = System.currentTimeMillis() - time;
         if (time > 100)
             log.info("====={},慢处理耗时{}ms", handler, time);
+        reply(ctx, packet, session, response);
+        Recyclable.release(request);
+    }
+
+    private static void reply(ChannelHandlerContext ctx, Packet packet, Session session, Message response) {
         if (response != null)
-            ctx.writeAndFlush(packet.replace(response));
+            ctx.writeAndFlush(packet != null ? packet.replace(response) : Packet.of(session, response));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package io.github.yezhihao.netmc.handler;
+
+import io.github.yezhihao.netmc.codec.Delimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * 标识位拆包器，帧的开始和结束使用同一个单字节标识位(如JT/T 808的0x7e)
+ * 1.使用ByteBuf.indexOf查找标识位(SWAR按8字节比较)，数据不完整时记录已查找的长度，下次从该位置继续
+ * 2.上一帧的结束标识位同时视为下一帧的开始，相邻的标识位(7e7e)在同一次查找中跳过
+ * 3.超长的数据、短于最小长度的干扰数据直接丢弃，从下一个标识位重新同步，不抛出异常，不影响连接
+ * TCP每个连接一个实例，UDP使用无状态的 decode(ByteBuf, Delimiter, List)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class FlagFrameDecoder extends ByteToMessageDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(FlagFrameDecoder.class);
+
+    private final byte flag;
+    private final boolean strip;
+    private final int minFrameLength;
+    private final int maxFrameLength;
+
+    /** 当前帧已查找过的长度 */
+    private int searched;
+    /** 正在丢弃超长的数据 */
+    private boolean discarding;
+    private long discardedBytes;
+
+    public FlagFrameDecoder(int maxFrameLength, Delimiter delimiter) {
+        checkPositive(maxFrameLength, "maxFrameLength");
+        if (delimiter.value.length != 1)
+            throw new IllegalArgumentException("标识位只能为单字节");
+        this.flag = delimiter.value[0];
+        this.strip = delimiter.strip;
+        this.minFrameLength = delimiter.minFrameLength;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        Object decoded = decode(ctx, in);
+        if (decoded != null) {
+            out.add(decoded);
+        }
+    }
+
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) {
+        for (; ; ) {
+            int start = in.readerIndex();
+            int end = in.writerIndex();
+            int i = in.indexOf(start + searched, end, flag);
+
+            if (i < 0) {
+                int length = end - start;
+                if (discarding || length > maxFrameLength) {
+                    discarding = true;
+                    discardedBytes += length;
+                    searched = 0;
+                    in.skipBytes(length);
+                } else {
+                    searched = length;
+                }
+                return null;
+            }
+
+            searched = 0;
+            int length = i - start;
+            if (discarding) {
+                //超长数据已丢弃，当前标识位作为下一帧的开始
+                discarding = false;
+                discard(ctx, discardedBytes + length);
+                discardedBytes = 0;
+                in.readerIndex(i + 1);
+                continue;
+            }
+            if (length < minFrameLength) {
+                //相邻的标识位或干扰数据
+                if (length > 0)
+                    log.debug("<<<<<丢弃干扰数据{}字节 {}", length, ctx.channel());
+                in.readerIndex(i + 1);
+                continue;
+            }
+            if (length > maxFrameLength) {
+                discard(ctx, length);
+                in.readerIndex(i + 1);
+                continue;
+            }
+
+            ByteBuf frame = in.retainedSlice(start, strip ? length : length + 1);
+            in.readerIndex(i + 1);
+            return frame;
+        }
+    }
+
+    private void discard(ChannelHandlerContext ctx, long length) {
+        log.warn("<<<<<丢弃超长数据{}字节,最大长度{} {}", length, maxFrameLength, ctx.channel());
+    }
+
+    /**
+     * 拆分一个完整的数据报(UDP)，末尾缺少结束标识位的数据同样作为一帧
+     * @param out 输出的帧由调用方释放
+     */
+    public static void decode(ByteBuf in, Delimiter delimiter, List<ByteBuf> out) {
+        byte flag = delimiter.value[0];
+        boolean strip = delimiter.strip;
+        int minFrameLength = delimiter.minFrameLength;
+        int end = in.writerIndex();
+
+        for (int start = in.readerIndex(); start < end; ) {
+            int i = in.indexOf(start, end, flag);
+            if (i < 0) {
+                if (end - start >= minFrameLength)
+                    out.add(in.retainedSlice(start, end - start));
+                break;
+            }
+            int length = i - start;
+            if (length >= minFrameLength)
+                out.add(in.retainedSlice(start, strip ? length : length + 1));
+            start = i + 1;
+        }
+        in.readerIndex(end);
+    }
+}
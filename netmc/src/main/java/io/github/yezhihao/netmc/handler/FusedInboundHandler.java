@@ -0,0 +1,113 @@
+package io.github.yezhihao.netmc.handler;
+
+import io.github.yezhihao.netmc.core.model.Message;
+import io.github.yezhihao.netmc.session.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TCP合并入站处理器
+ * 在一次channelRead中完成 会话查找、拆包、消息解码和分发，等价于 frameDecoder → adapter → decoder → dispatcher，
+ * 入站不创建Packet，也不经过中间的ChannelHandlerContext，仅在需要应答时创建Packet
+ * 每个连接一个实例(拆包器有状态)，编码器须位于其之前(靠近head)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class FusedInboundHandler extends ByteToMessageDecoder {
+
+    private final Framer framer;
+    private final TCPMessageAdapter adapter;
+    private final MessageDecoderWrapper decoder;
+    private final DispatcherHandler dispatcher;
+
+    private final List<Object> frames = new ArrayList<>(4);
+    private Session session;
+
+    /**
+     * @param frameDecoder 拆包器，仅支持netmc中的拆包器(DelimiterBasedFrameDecoder及其子类、FlagFrameDecoder、DynamicLengthFieldBasedFrameDecoder)
+     */
+    public FusedInboundHandler(ByteToMessageDecoder frameDecoder, TCPMessageAdapter adapter, MessageDecoderWrapper decoder, DispatcherHandler dispatcher) {
+        this.framer = framer(frameDecoder);
+        this.adapter = adapter;
+        this.decoder = decoder;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        List<Object> frames = this.frames;
+        framer.decode(ctx, in, frames);
+        int i = 0, size = frames.size();
+        try {
+            for (; i < size; i++)
+                read(ctx, (ByteBuf) frames.get(i));
+        } finally {
+            //拆包器之外的异常时释放剩余的帧
+            for (i++; i < size; i++)
+                ((ByteBuf) frames.get(i)).release();
+            frames.clear();
+        }
+    }
+
+    private void read(ChannelHandlerContext ctx, ByteBuf frame) {
+        Session session = this.session;
+        if (session == null)
+            this.session = session = adapter.getSession(ctx.channel());
+        session.access();
+        try {
+            Message message = decoder.decode(frame, session);
+            if (message != null)
+                dispatcher.dispatch(ctx, null, session, message);
+        } catch (Throwable e) {
+            //与分级处理器一致，单帧的异常交由exceptionCaught处理，继续处理同一次读取中的后续帧
+            exceptionCaught(ctx, e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        adapter.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        adapter.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        adapter.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        adapter.userEventTriggered(ctx, evt);
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable e) {
+        adapter.exceptionCaught(ctx, e);
+    }
+
+    private interface Framer {
+        void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception;
+    }
+
+    private static Framer framer(ByteToMessageDecoder frameDecoder) {
+        if (frameDecoder instanceof DelimiterBasedFrameDecoder)
+            return ((DelimiterBasedFrameDecoder) frameDecoder)::decode;
+        if (frameDecoder instanceof FlagFrameDecoder)
+            return ((FlagFrameDecoder) frameDecoder)::decode;
+        if (frameDecoder instanceof DynamicLengthFieldBasedFrameDecoder)
+            return ((DynamicLengthFieldBasedFrameDecoder) frameDecoder)::decode;
+        throw new IllegalArgumentException("不支持的拆包器:" + frameDecoder.getClass().getName());
+    }
+}
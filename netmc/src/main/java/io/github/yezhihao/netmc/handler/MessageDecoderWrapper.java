@@ -3,6 +3,7 @@ package io.github.yezhihao.netmc.handler;
 import io.github.yezhihao.netmc.codec.MessageDecoder;
 import io.github.yezhihao.netmc.core.model.Message;
 import io.github.yezhihao.netmc.session.Packet;
+import io.github.yezhihao.netmc.session.Session;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
@@ -33,15 +34,22 @@ public class MessageDecoderWrapper extends ChannelInboundHandlerAdapter {
         Packet packet = (Packet) msg;
         ByteBuf input = packet.take();
         try {
-            Message message = decoder.decode(input, packet.session);
+            Message message = decode(input, packet.session);
             if (message != null)
                 ctx.fireChannelRead(packet.replace(message));
             input.skipBytes(input.readableBytes());
+        } finally {
+            input.release();
+        }
+    }
+
+    /** 解码，消息体可能引用input，由调用方在处理完成后释放 */
+    Message decode(ByteBuf input, Session session) {
+        try {
+            return decoder.decode(input, session);
         } catch (Exception e) {
             log.error("消息解码异常[" + ByteBufUtil.hexDump(input, 0, input.writerIndex()) + "]", e);
             throw new DecoderException(e);
-        } finally {
-            input.release();
         }
     }
 
@@ -1,5 +1,6 @@
 package io.github.yezhihao.netmc.handler;
 
+import io.github.yezhihao.netmc.session.IdleChecker;
 import io.github.yezhihao.netmc.session.Packet;
 import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.netmc.session.SessionManager;
@@ -29,22 +30,31 @@ public class TCPMessageAdapter extends ChannelInboundHandlerAdapter {
 
     private final SessionManager sessionManager;
 
+    private final IdleChecker idleChecker;
+
     public TCPMessageAdapter(SessionManager sessionManager) {
+        this(sessionManager, null);
+    }
+
+    /**
+     * @param idleChecker 空闲检测，连接建立时创建会话并注册，为null时由管道中的IdleStateHandler检测
+     */
+    public TCPMessageAdapter(SessionManager sessionManager, IdleChecker idleChecker) {
         this.sessionManager = sessionManager;
+        this.idleChecker = idleChecker;
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         ByteBuf buf = (ByteBuf) msg;
-        Session session = getSession(ctx);
+        Session session = getSession(ctx.channel());
         session.access();
         ctx.fireChannelRead(Packet.of(session, buf));
     }
 
-    private Session getSession(ChannelHandlerContext ctx) {
-        Session session = ctx.channel().attr(KEY).get();
+    Session getSession(Channel channel) {
+        Session session = channel.attr(KEY).get();
         if (session == null) {
-            Channel channel = ctx.channel();
             session = sessionManager.newInstance(channel);
             channel.attr(KEY).set(session);
         }
@@ -54,6 +64,16 @@ public class TCPMessageAdapter extends ChannelInboundHandlerAdapter {
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         log.info("<<<<< Connected{}", ctx.channel().remoteAddress());
+        if (idleChecker != null)
+            idleChecker.add(getSession(ctx.channel()));
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        Session session = ctx.channel().attr(KEY).get();
+        if (session != null)
+            session.writabilityChanged();
+        ctx.fireChannelWritabilityChanged();
     }
 
     @Override
@@ -1,6 +1,7 @@
 package io.github.yezhihao.netmc.handler;
 
 import io.github.yezhihao.netmc.codec.Delimiter;
+import io.github.yezhihao.netmc.session.IdleChecker;
 import io.github.yezhihao.netmc.session.Packet;
 import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.netmc.session.SessionManager;
@@ -15,11 +16,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -34,17 +35,19 @@ public class UDPMessageAdapter extends ChannelInboundHandlerAdapter {
 
     private final SessionManager sessionManager;
 
-    private final long readerIdleTime;
+    private final IdleChecker idleChecker;
 
     public static UDPMessageAdapter newInstance(SessionManager sessionManager, int readerIdleTime, Delimiter[] delimiters) {
         if (delimiters == null)
             return new UDPMessageAdapter(sessionManager, readerIdleTime);
+        if (delimiters.length == 1 && delimiters[0].flag)
+            return new FlagFrameImpl(sessionManager, readerIdleTime, delimiters[0]);
         return new DelimiterBasedFrameImpl(sessionManager, readerIdleTime, delimiters);
     }
 
     private UDPMessageAdapter(SessionManager sessionManager, int readerIdleTime) {
         this.sessionManager = sessionManager;
-        this.readerIdleTime = TimeUnit.SECONDS.toMillis(readerIdleTime);
+        this.idleChecker = readerIdleTime > 0 ? new IdleChecker(readerIdleTime, IdleChecker.INVALIDATE) : null;
     }
 
     @Override
@@ -63,40 +66,52 @@ public class UDPMessageAdapter extends ChannelInboundHandlerAdapter {
     protected Session getSession(ChannelHandlerContext ctx, InetSocketAddress sender) {
         Session session = sessionMap.get(sender);
         if (session == null) {
-            session = sessionMap.computeIfAbsent(sender, _sender -> sessionManager.newInstance(ctx.channel(), _sender, sessionRemover));
+            session = sessionMap.computeIfAbsent(sender, _sender -> {
+                Session t = sessionManager.newInstance(ctx.channel(), _sender, sessionRemover);
+                if (idleChecker != null)
+                    idleChecker.add(t);
+                return t;
+            });
             log.info("<<<<< Connected{}", session);
         }
         return session;
     }
 
+    /**
+     * 同一DatagramChannel上的会话共享发送缓冲区，只通知有待发送消息的会话
+     */
     @Override
-    public void channelActive(ChannelHandlerContext ctx) {
-        Thread thread = new Thread(() -> {
-            for (; ; ) {
-                long nextDelay = readerIdleTime;
-                long now = System.currentTimeMillis();
-
-                for (Session session : sessionMap.values()) {
-                    long time = readerIdleTime - (now - session.getLastAccessedTime());
-
-                    if (time <= 0) {
-                        log.warn(">>>>>终端心跳超时 {}", session);
-                        session.invalidate();
-                    } else {
-                        nextDelay = Math.min(time, nextDelay);
-                    }
-                }
-                try {
-                    Thread.sleep(nextDelay);
-                } catch (Throwable e) {
-                    log.warn("IdleStateScheduler", e);
-                }
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        Session.writabilityChanged(ctx.channel());
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private static class FlagFrameImpl extends UDPMessageAdapter {
+
+        private final Delimiter delimiter;
+
+        private FlagFrameImpl(SessionManager sessionManager, int readerIdleTime, Delimiter delimiter) {
+            super(sessionManager, readerIdleTime);
+            this.delimiter = delimiter;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf buf = packet.content();
+            Session session = getSession(ctx, packet.sender());
+            session.access();
+
+            List<ByteBuf> out = new ArrayList<>(2);
+            try {
+                FlagFrameDecoder.decode(buf, delimiter, out);
+            } finally {
+                buf.release();
             }
-        });
-        thread.setName(Thread.currentThread().getName() + "-c");
-        thread.setPriority(Thread.MIN_PRIORITY);
-        thread.setDaemon(true);
-        thread.start();
+            for (ByteBuf t : out) {
+                ctx.fireChannelRead(Packet.of(session, t));
+            }
+        }
     }
 
     private static class DelimiterBasedFrameImpl extends UDPMessageAdapter {
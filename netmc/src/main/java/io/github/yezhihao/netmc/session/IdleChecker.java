@@ -0,0 +1,74 @@
+package io.github.yezhihao.netmc.session;
+
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 会话空闲检测，TCP和UDP的所有会话共享一个粗粒度(1秒)的时间轮
+ * 每个会话只注册一个超时任务，到期时按Session.getLastAccessedTime()顺延，超过readerIdleTime未收到消息时执行空闲策略
+ * 代替每个连接一个IdleStateHandler(TCP)和遍历全部会话的检测线程(UDP)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class IdleChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(IdleChecker.class);
+
+    private static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("netmc-idle", true), 1, TimeUnit.SECONDS, 1024);
+
+    /** 在管道中触发READER_IDLE事件，由适配器处理(TCP) */
+    public static final Consumer<Session> FIRE_EVENT = session -> session.channel().pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+
+    /** 注销会话(UDP) */
+    public static final Consumer<Session> INVALIDATE = session -> {
+        log.warn(">>>>>终端心跳超时 {}", session);
+        session.invalidate();
+    };
+
+    private final long readerIdleTime;
+
+    private final Consumer<Session> policy;
+
+    /**
+     * @param readerIdleTime 读空闲时间(秒)
+     * @param policy         空闲策略，在时间轮线程中执行，不能阻塞
+     */
+    public IdleChecker(int readerIdleTime, Consumer<Session> policy) {
+        this.readerIdleTime = TimeUnit.SECONDS.toMillis(readerIdleTime);
+        this.policy = policy;
+    }
+
+    public void add(Session session) {
+        schedule(session, readerIdleTime);
+    }
+
+    private void schedule(Session session, long delay) {
+        session.idleTimeout = TIMER.newTimeout(t -> check(session, t), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(Session session, Timeout timeout) {
+        //会话已注销
+        if (session.idleTimeout != timeout)
+            return;
+
+        long delay = readerIdleTime - (System.currentTimeMillis() - session.getLastAccessedTime());
+        if (delay > 0) {
+            schedule(session, delay);
+            return;
+        }
+        session.idleTimeout = null;
+        try {
+            policy.accept(session);
+        } catch (Exception e) {
+            log.warn("IdleChecker", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.yezhihao.netmc.session;
+
+import io.github.yezhihao.netmc.core.model.Message;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * 会话下行消息的发送策略
+ * 通道不可写(超过WriteBufferWaterMark高水位)时，消息按优先级进入会话的发送队列，恢复可写后按优先级发送
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class OutboundPolicy {
+
+    /** 协议应答 */
+    public static final int ACK = 0;
+    /** 控制指令 */
+    public static final int COMMAND = 1;
+    /** 批量数据(参数设置、升级包等) */
+    public static final int BULK = 2;
+
+    public static final OutboundPolicy DEFAULT = new OutboundPolicy(256, Overflow.FAIL, message -> COMMAND);
+
+    public enum Overflow {
+        /** 拒绝新消息 */
+        FAIL,
+        /** 丢弃优先级不高于新消息的最早一条消息，没有时拒绝新消息 */
+        DROP_OLDEST
+    }
+
+    private final int maxQueued;
+    private final Overflow overflow;
+    private final ToIntFunction<Message> priority;
+
+    /**
+     * @param maxQueued 每个会话发送队列的最大消息数
+     * @param overflow  队列已满时的处理方式
+     * @param priority  消息优先级(ACK、COMMAND、BULK)
+     */
+    public OutboundPolicy(int maxQueued, Overflow overflow, ToIntFunction<Message> priority) {
+        this.maxQueued = maxQueued;
+        this.overflow = overflow;
+        this.priority = priority;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public int priority(Message message) {
+        if (message == null)
+            return COMMAND;
+        int p = priority.applyAsInt(message);
+        return Math.max(ACK, Math.min(p, BULK));
+    }
+}
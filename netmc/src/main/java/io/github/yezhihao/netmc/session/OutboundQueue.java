@@ -0,0 +1,167 @@
+package io.github.yezhihao.netmc.session;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话的下行发送队列，通道可写且队列为空时直接发送
+ * 队列非空的会话登记在通道的BACKLOG中，通道恢复可写时只需通知这些会话(UDP多个会话共享同一通道)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+final class OutboundQueue {
+
+    /** 通道上有待发送消息的会话 */
+    static final AttributeKey<Set<Session>> BACKLOG = AttributeKey.valueOf("outboundBacklog");
+
+    private final Session owner;
+    private final ArrayDeque<Entry>[] queues = new ArrayDeque[OutboundPolicy.BULK + 1];
+    private int size;
+    private long bytes;
+
+    private static final class Entry {
+        private final Packet packet;
+        private final ChannelPromise promise;
+
+        private Entry(Packet packet, ChannelPromise promise) {
+            this.packet = packet;
+            this.promise = promise;
+        }
+    }
+
+    OutboundQueue(Session owner) {
+        this.owner = owner;
+    }
+
+    ChannelFuture write(Channel channel, Packet packet, int priority, OutboundPolicy policy) {
+        ChannelPromise promise = channel.newPromise();
+        Entry dropped = null;
+        synchronized (this) {
+            if (size != 0 || !channel.isWritable()) {
+                if (size >= policy.getMaxQueued()) {
+                    if (policy.getOverflow() == OutboundPolicy.Overflow.DROP_OLDEST)
+                        dropped = pollLowest(priority);
+                    if (dropped == null) {
+                        fail(new Entry(packet, promise), "发送队列已满");
+                        return promise;
+                    }
+                }
+                ArrayDeque<Entry> queue = queues[priority];
+                if (queue == null)
+                    queues[priority] = queue = new ArrayDeque<>();
+                queue.add(new Entry(packet, promise));
+                if (size++ == 0)
+                    backlog(channel).add(owner);
+                bytes += bytes(packet);
+                packet = null;
+            }
+        }
+        if (dropped != null)
+            fail(dropped, "发送队列已满，丢弃");
+        if (packet != null)
+            channel.writeAndFlush(packet, promise);
+        else if (channel.isWritable())
+            channel.eventLoop().execute(() -> drain(channel));
+        return promise;
+    }
+
+    /** 按优先级发送，直到通道不可写 */
+    void drain(Channel channel) {
+        boolean written = false;
+        for (; ; ) {
+            Entry entry;
+            synchronized (this) {
+                if (size == 0 || !channel.isWritable())
+                    break;
+                entry = poll();
+                if (size == 0)
+                    backlog(channel).remove(owner);
+            }
+            channel.write(entry.packet, entry.promise);
+            written = true;
+        }
+        if (written)
+            channel.flush();
+    }
+
+    /** 通道关闭，队列中的消息全部失败 */
+    void clear(Channel channel, String cause) {
+        for (; ; ) {
+            Entry entry;
+            synchronized (this) {
+                if (size == 0)
+                    return;
+                entry = poll();
+                if (size == 0)
+                    backlog(channel).remove(owner);
+            }
+            fail(entry, cause);
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    static Set<Session> backlog(Channel channel) {
+        Attribute<Set<Session>> attr = channel.attr(BACKLOG);
+        Set<Session> backlog = attr.get();
+        if (backlog == null) {
+            backlog = ConcurrentHashMap.newKeySet();
+            Set<Session> old = attr.setIfAbsent(backlog);
+            if (old != null)
+                backlog = old;
+        }
+        return backlog;
+    }
+
+    /** 按优先级取出第一条，调用方须持有锁 */
+    private Entry poll() {
+        for (int i = OutboundPolicy.ACK; i <= OutboundPolicy.BULK; i++) {
+            ArrayDeque<Entry> queue = queues[i];
+            if (queue != null && !queue.isEmpty())
+                return removed(queue.poll());
+        }
+        return null;
+    }
+
+    /** 取出优先级不高于priority的最早一条，调用方须持有锁 */
+    private Entry pollLowest(int priority) {
+        for (int i = OutboundPolicy.BULK; i >= priority; i--) {
+            ArrayDeque<Entry> queue = queues[i];
+            if (queue != null && !queue.isEmpty())
+                return removed(queue.poll());
+        }
+        return null;
+    }
+
+    private Entry removed(Entry entry) {
+        size--;
+        bytes -= bytes(entry.packet);
+        return entry;
+    }
+
+    private static int bytes(Packet packet) {
+        ByteBuf byteBuf = packet.byteBuf;
+        return byteBuf == null ? 0 : byteBuf.readableBytes();
+    }
+
+    private static void fail(Entry entry, String cause) {
+        ByteBuf byteBuf = entry.packet.take();
+        if (byteBuf != null)
+            byteBuf.release();
+        entry.promise.tryFailure(new IllegalStateException(cause));
+    }
+}
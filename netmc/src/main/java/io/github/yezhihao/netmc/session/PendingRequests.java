@@ -0,0 +1,147 @@
+package io.github.yezhihao.netmc.session;
+
+import io.github.yezhihao.netmc.core.model.Message;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话的待应答请求表，按(应答类型, 应答流水号)组成的long键索引，同一终端可同时等待多个应答
+ * 超时由所有会话共享的时间轮处理，超时后按重传策略使用原流水号重发，收到应答时取消重传
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+final class PendingRequests {
+
+    private static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("netmc-request", true), 100, TimeUnit.MILLISECONDS);
+
+    private static final AtomicInteger TYPE_SEQ = new AtomicInteger();
+
+    private static final ClassValue<Integer> TYPE_ID = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return TYPE_SEQ.incrementAndGet();
+        }
+    };
+
+    private final LongObjectHashMap<Pending> pendings = new LongObjectHashMap<>(4);
+
+    private final Session session;
+
+    PendingRequests(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @param serialNo 应答流水号，应答消息不包含流水号时为-1(同一类型同时只能等待一个应答)
+     */
+    static long key(Class<?> responseClass, int serialNo) {
+        return ((long) TYPE_ID.get(responseClass) << 32) | (serialNo & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 登记待应答的请求，由调用方发送
+     * @param timeout 首次发送的应答超时时间(毫秒)
+     * @throws IllegalStateException 已有相同键的请求在等待应答，或超过重传策略的窗口大小
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> add(long key, Message request, RetryPolicy policy, long timeout) {
+        Pending pending = new Pending(key, request, policy);
+        synchronized (pendings) {
+            if (pendings.containsKey(key))
+                throw new IllegalStateException("等待应答中，请勿重复发送");
+            int window = policy.getWindow();
+            if (window > 0 && pendings.size() >= window)
+                throw new IllegalStateException("待应答的请求超过" + window + "条");
+            pendings.put(key, pending);
+        }
+        pending.timeout = TIMER.newTimeout(pending, timeout, TimeUnit.MILLISECONDS);
+        //请求表按键索引不同类型的应答，complete时按键匹配，键中的类型与调用方的T一致
+        return (CompletableFuture<T>) pending;
+    }
+
+    boolean complete(long key, Object response) {
+        Pending pending;
+        synchronized (pendings) {
+            pending = pendings.get(key);
+        }
+        return pending != null && pending.complete(response);
+    }
+
+    int size() {
+        synchronized (pendings) {
+            return pendings.size();
+        }
+    }
+
+    private void remove(Pending pending) {
+        synchronized (pendings) {
+            if (pendings.get(pending.key) == pending)
+                pendings.remove(pending.key);
+        }
+        Timeout timeout = pending.timeout;
+        if (timeout != null)
+            timeout.cancel();
+    }
+
+    /** 完成、异常、取消或超时后从请求表中移除 */
+    private final class Pending extends CompletableFuture<Object> implements TimerTask {
+
+        private final long key;
+        private final Message request;
+        private final RetryPolicy policy;
+        private int retryCount;
+        private volatile Timeout timeout;
+
+        private Pending(long key, Message request, RetryPolicy policy) {
+            this.key = key;
+            this.request = request;
+            this.policy = policy;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (isDone())
+                return;
+            if (retryCount >= policy.getMaxRetries() || !session.channel().isActive()) {
+                completeExceptionally(new TimeoutException("等待应答超时，重传" + retryCount + "次"));
+                return;
+            }
+            retryCount++;
+            session.write(Packet.of(session, request)).addListener(future -> {
+                if (!future.isSuccess())
+                    completeExceptionally(future.cause());
+            });
+            this.timeout = TIMER.newTimeout(this, policy.timeout(retryCount), TimeUnit.MILLISECONDS);
+            //重传期间已收到应答
+            if (isDone())
+                this.timeout.cancel();
+        }
+
+        @Override
+        public boolean complete(Object value) {
+            remove(this);
+            return super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            remove(this);
+            return super.completeExceptionally(ex);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
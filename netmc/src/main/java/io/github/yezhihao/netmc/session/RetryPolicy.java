@@ -0,0 +1,46 @@
+package io.github.yezhihao.netmc.session;
+
+/**
+ * 下行消息重传策略
+ * 按JT/T 808 终端参数(0x0002~0x0005)的重传规则：TN+1 = TN × (N + 1)，TN为第N次重传后的应答超时时间
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class RetryPolicy {
+
+    /** 不重传，等待30秒，不限制待应答的请求数 */
+    public static final RetryPolicy NONE = new RetryPolicy(30, 0, 0);
+
+    private final long timeout;
+    private final int maxRetries;
+    private final int window;
+
+    /**
+     * @param timeout    应答超时时间(秒)
+     * @param maxRetries 重传次数
+     * @param window     每个会话同时等待应答的最大请求数，0不限制
+     */
+    public RetryPolicy(int timeout, int maxRetries, int window) {
+        this.timeout = timeout * 1000L;
+        this.maxRetries = maxRetries;
+        this.window = window;
+    }
+
+    /**
+     * 第retryCount次重传后的应答超时时间(毫秒)，retryCount为0时为首次发送
+     */
+    public long timeout(int retryCount) {
+        long t = timeout;
+        for (int n = 1; n <= retryCount; n++)
+            t *= n + 1;
+        return t;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+}
@@ -1,18 +1,22 @@
 package io.github.yezhihao.netmc.session;
 
+import io.github.yezhihao.netmc.core.SerialExecutor;
 import io.github.yezhihao.netmc.core.model.Message;
 import io.github.yezhihao.netmc.core.model.Response;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.MonoSink;
 
 import java.net.InetSocketAddress;
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -40,6 +44,13 @@ public class Session {
     private String sessionId;
     private String clientId;
     private final AtomicInteger serialNo = new AtomicInteger(0);
+    private volatile SerialExecutor serialExecutor;
+    /** 空闲检测的超时任务 */
+    volatile Timeout idleTimeout;
+    private final OutboundQueue outboundQueue = new OutboundQueue(this);
+    /** 通道开始不可写的时间，可写时为0 */
+    private volatile long unwritableSince;
+    private volatile long unwritableTime;
     private BiConsumer<Session, Message> requestInterceptor = (session, message) -> {
     };
     private BiConsumer<Session, Message> responseInterceptor = (session, message) -> {
@@ -142,6 +153,10 @@ public class Session {
         return remoteAddress;
     }
 
+    public Channel channel() {
+        return channel;
+    }
+
     public InetSocketAddress localAddress() {
         return (InetSocketAddress) channel.localAddress();
     }
@@ -163,6 +178,20 @@ public class Session {
             this.responseInterceptor = responseInterceptor;
     }
 
+    /**
+     * 该会话的串行执行通道，保证同一终端的异步消息按到达顺序处理
+     */
+    public SerialExecutor serialExecutor(Executor parent) {
+        SerialExecutor executor = serialExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if ((executor = serialExecutor) == null)
+                    serialExecutor = executor = new SerialExecutor(parent);
+            }
+        }
+        return executor;
+    }
+
     private static final IntUnaryOperator UNARY_OPERATOR = prev -> prev >= 0xFFFF ? 0 : prev + 1;
 
     public int nextSerialNo() {
@@ -170,6 +199,12 @@ public class Session {
     }
 
     public void invalidate() {
+        Timeout idleTimeout = this.idleTimeout;
+        if (idleTimeout != null) {
+            this.idleTimeout = null;
+            idleTimeout.cancel();
+        }
+        outboundQueue.clear(channel, "连接已断开");
         if (isRegistered() && sessionManager != null)
             sessionManager.remove(this);
         remover.apply(this);
@@ -193,6 +228,69 @@ public class Session {
         return sb.toString();
     }
 
+    /**
+     * 按发送策略写出，通道不可写时按优先级进入发送队列
+     * @see SessionManager#setOutboundPolicy(OutboundPolicy)
+     */
+    public ChannelFuture write(Packet packet) {
+        OutboundPolicy policy = sessionManager == null ? OutboundPolicy.DEFAULT : sessionManager.getOutboundPolicy();
+        ChannelFuture future = outboundQueue.write(channel, packet, policy.priority(packet.message), policy);
+        //UDP会话只在有待发送的消息时才收到可写状态变化，从此刻开始计时
+        if (unwritableSince == 0L && !channel.isWritable())
+            unwritableSince = System.currentTimeMillis();
+        return future;
+    }
+
+    /**
+     * 通道可写状态变化，只通知该通道上有待发送消息的会话(UDP多个会话共享同一通道)
+     */
+    public static void writabilityChanged(Channel channel) {
+        Set<Session> backlog = channel.attr(OutboundQueue.BACKLOG).get();
+        if (backlog == null || backlog.isEmpty())
+            return;
+        for (Session session : backlog)
+            session.writabilityChanged();
+    }
+
+    /**
+     * 通道可写状态变化，由适配器在channelWritabilityChanged中调用
+     */
+    public void writabilityChanged() {
+        if (!channel.isWritable()) {
+            if (unwritableSince == 0L)
+                unwritableSince = System.currentTimeMillis();
+            return;
+        }
+        long since = unwritableSince;
+        if (since != 0L) {
+            unwritableSince = 0L;
+            unwritableTime += System.currentTimeMillis() - since;
+        }
+        outboundQueue.drain(channel);
+    }
+
+    /** 发送队列中的消息数 */
+    public int getQueuedCount() {
+        return outboundQueue.size();
+    }
+
+    /** 待发送的字节数(发送队列中已编码的消息 + TCP通道的发送缓冲区) */
+    public long getQueuedBytes() {
+        long bytes = outboundQueue.bytes();
+        if (!udp) {
+            ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+            if (buffer != null)
+                bytes += buffer.totalPendingWriteBytes();
+        }
+        return bytes;
+    }
+
+    /** 通道累计不可写的时间(毫秒)，UDP只统计本会话有待发送消息期间 */
+    public long getUnwritableTime() {
+        long since = unwritableSince;
+        return unwritableTime + (since == 0L ? 0L : System.currentTimeMillis() - since);
+    }
+
     /**
      * 异步发送通知类消息
      * 同步发送 mono.block()
@@ -201,7 +299,7 @@ public class Session {
     public Mono<Void> notify(Message message) {
         requestInterceptor.accept(this, message);
         Packet packet = Packet.of(this, message);
-        return Mono.create(sink -> channel.writeAndFlush(packet).addListener(future -> {
+        return Mono.create(sink -> write(packet).addListener(future -> {
             if (future.isSuccess()) {
                 sink.success();
             } else {
@@ -212,7 +310,7 @@ public class Session {
 
     public Mono<Void> notify(ByteBuf message) {
         Packet packet = Packet.of(this, message);
-        return Mono.create(sink -> channel.writeAndFlush(packet).addListener(future -> {
+        return Mono.create(sink -> write(packet).addListener(future -> {
             if (future.isSuccess()) {
                 sink.success();
             } else {
@@ -221,30 +319,65 @@ public class Session {
         }));
     }
 
-    private final Map<String, MonoSink> subscribers = new ConcurrentHashMap<>();
+    private volatile PendingRequests pendingRequests;
+
+    private PendingRequests pendingRequests() {
+        PendingRequests requests = pendingRequests;
+        if (requests == null) {
+            synchronized (this) {
+                if ((requests = pendingRequests) == null)
+                    pendingRequests = requests = new PendingRequests(this);
+            }
+        }
+        return requests;
+    }
 
     /**
-     * 异步发送消息，接收响应（默认超时时间30秒）
+     * 异步发送消息，接收响应（超时和重传按SessionManager的重传策略，默认不重传，超时时间30秒）
      * 同步接收 mono.block()
      * 订阅回调 mono.doOnSuccess({处理成功}).doOnError({处理异常}).subscribe()开始订阅
      */
     public <T> Mono<T> request(Message request, Class<T> responseClass) {
-        String key = requestKey(request, responseClass);
-        return Mono.<T>create(sink -> {
-            if (subscribers.putIfAbsent(key, sink) != null) {
-                sink.error(new IllegalStateException("等待应答中，请勿重复发送"));
-            } else {
-                sink.onDispose(() -> subscribers.remove(key, sink));
-                requestInterceptor.accept(this, request);
-                Packet packet = Packet.of(this, request);
-
-                channel.writeAndFlush(packet).addListener(future -> {
-                    if (!future.isSuccess()) {
-                        sink.error(future.cause());
-                    }
-                });
+        return Mono.fromFuture(() -> requestFuture(request, responseClass));
+    }
+
+    /**
+     * 异步发送消息，接收响应（超时和重传按SessionManager的重传策略，默认不重传，超时时间30秒）
+     */
+    public <T> CompletableFuture<T> requestFuture(Message request, Class<T> responseClass) {
+        RetryPolicy policy = retryPolicy();
+        return requestFuture(request, responseClass, policy, policy.timeout(0));
+    }
+
+    /**
+     * 异步发送消息，接收响应（不重传）
+     */
+    public <T> CompletableFuture<T> requestFuture(Message request, Class<T> responseClass, long timeout, TimeUnit unit) {
+        return requestFuture(request, responseClass, RetryPolicy.NONE, unit.toMillis(timeout));
+    }
+
+    /**
+     * 应答消息实现Response时按应答流水号匹配，同一终端可同时等待多个应答；否则同一类型同时只能等待一个应答
+     * 重传使用相同的流水号，不再经过下行消息拦截器
+     */
+    private <T> CompletableFuture<T> requestFuture(Message request, Class<T> responseClass, RetryPolicy policy, long timeout) {
+        //拦截器中可能分配流水号，须在登记之前执行
+        requestInterceptor.accept(this, request);
+        int serialNo = Response.class.isAssignableFrom(responseClass) ? request.getSerialNo() : -1;
+        CompletableFuture<T> future;
+        try {
+            future = pendingRequests().add(PendingRequests.key(responseClass, serialNo), request, policy, timeout);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Packet packet = Packet.of(this, request);
+        write(packet).addListener(f -> {
+            if (!f.isSuccess()) {
+                future.completeExceptionally(f.cause());
             }
-        }).timeout(Duration.ofSeconds(30L));
+        });
+        return future;
     }
 
     /**
@@ -252,28 +385,20 @@ public class Session {
      */
     public boolean response(Message message) {
         responseInterceptor.accept(this, message);
-        MonoSink<Message> sink = subscribers.get(responseKey(message));
-        if (sink != null) {
-            sink.success(message);
-            return true;
-        }
-        return false;
+        PendingRequests requests = pendingRequests;
+        if (requests == null)
+            return false;
+        int serialNo = message instanceof Response ? ((Response) message).getResponseSerialNo() : -1;
+        return requests.complete(PendingRequests.key(message.getClass(), serialNo), message);
     }
 
-    private static String requestKey(Message request, Class<?> responseClass) {
-        String className = responseClass.getName();
-        if (Response.class.isAssignableFrom(responseClass)) {
-            return className + '.' + request.getSerialNo();
-        }
-        return className;
+    private RetryPolicy retryPolicy() {
+        return sessionManager == null ? RetryPolicy.NONE : sessionManager.getRetryPolicy(udp);
     }
 
-    private static String responseKey(Object response) {
-        String className = response.getClass().getName();
-        if (response instanceof Response) {
-            Response resp = (Response) response;
-            return className + '.' + resp.getResponseSerialNo();
-        }
-        return className;
+    /** 等待应答的请求数 */
+    public int getPendingRequestCount() {
+        PendingRequests requests = pendingRequests;
+        return requests == null ? 0 : requests.size();
     }
 }
\ No newline at end of file
@@ -28,6 +28,12 @@ public class SessionManager {
 
     private final Class<? extends Enum> sessionKeyClass;
 
+    private RetryPolicy tcpRetryPolicy = RetryPolicy.NONE;
+
+    private RetryPolicy udpRetryPolicy = RetryPolicy.NONE;
+
+    private OutboundPolicy outboundPolicy = OutboundPolicy.DEFAULT;
+
     public SessionManager() {
         this(null, null);
     }
@@ -113,4 +119,29 @@ public class SessionManager {
     public Class<? extends Enum> getSessionKeyClass() {
         return sessionKeyClass;
     }
+
+    /**
+     * 下行请求的重传策略(JT/T 808 终端参数0x0002~0x0005)
+     */
+    public SessionManager setRetryPolicy(RetryPolicy tcp, RetryPolicy udp) {
+        this.tcpRetryPolicy = tcp;
+        this.udpRetryPolicy = udp;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy(boolean udp) {
+        return udp ? udpRetryPolicy : tcpRetryPolicy;
+    }
+
+    /**
+     * 下行消息的发送队列大小、溢出处理和优先级
+     */
+    public SessionManager setOutboundPolicy(OutboundPolicy outboundPolicy) {
+        this.outboundPolicy = outboundPolicy;
+        return this;
+    }
+
+    public OutboundPolicy getOutboundPolicy() {
+        return outboundPolicy;
+    }
 }
\ No newline at end of file
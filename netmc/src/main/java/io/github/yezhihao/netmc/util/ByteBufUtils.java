@@ -14,23 +14,19 @@ public class ByteBufUtils {
      * found in the haystack.
      */
     public static int indexOf(ByteBuf haystack, byte[] needle) {
-        for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i++) {
-            int haystackIndex = i;
-            int needleIndex;
-            for (needleIndex = 0; needleIndex < needle.length; needleIndex++) {
-                if (haystack.getByte(haystackIndex) != needle[needleIndex]) {
-                    break;
-                } else {
-                    haystackIndex++;
-                    if (haystackIndex == haystack.writerIndex() && needleIndex != needle.length - 1) {
-                        return -1;
-                    }
-                }
-            }
-
+        int readerIndex = haystack.readerIndex();
+        int writerIndex = haystack.writerIndex();
+        byte first = needle[0];
+        //首字节使用ByteBuf.indexOf(SWAR)查找，再比较剩余字节
+        for (int i = haystack.indexOf(readerIndex, writerIndex, first); i >= 0; i = haystack.indexOf(i + 1, writerIndex, first)) {
+            if (i + needle.length > writerIndex)
+                return -1;
+            int needleIndex = 1;
+            while (needleIndex < needle.length && haystack.getByte(i + needleIndex) == needle[needleIndex])
+                needleIndex++;
             if (needleIndex == needle.length) {
                 // Found the needle from the haystack!
-                return i - haystack.readerIndex();
+                return i - readerIndex;
             }
         }
         return -1;
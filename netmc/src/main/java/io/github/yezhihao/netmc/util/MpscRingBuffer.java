@@ -0,0 +1,98 @@
+package io.github.yezhihao.netmc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界环形队列，多生产者单消费者(MPSC)
+ * 入队和出队均不产生额外对象，容量向上取整为2的幂
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    /** 仅由消费者线程写入 */
+    private volatile long consumerIndex;
+
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity + " (expected: > 0)");
+        int size = capacity > (1 << 30) ? (1 << 30) : Integer.highestOneBit(capacity - 1) << 1;
+        if (size == 0)
+            size = 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.capacity = size;
+        this.mask = size - 1;
+    }
+
+    /**
+     * 入队，可由任意线程调用
+     * @return 队列已满时返回false
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long p;
+        do {
+            p = producerIndex.get();
+            if (p - consumerIndex >= capacity)
+                return false;
+        } while (!producerIndex.compareAndSet(p, p + 1));
+        buffer.lazySet((int) p & mask, e);
+        return true;
+    }
+
+    /**
+     * 出队，仅限消费者线程调用
+     * @return 队列为空时返回null
+     */
+    public E poll() {
+        long c = consumerIndex;
+        int i = (int) c & mask;
+        E e = buffer.get(i);
+        if (e == null) {
+            if (c == producerIndex.get())
+                return null;
+            //生产者已占位但尚未写入
+            do {
+                Thread.onSpinWait();
+                e = buffer.get(i);
+            } while (e == null);
+        }
+        buffer.lazySet(i, null);
+        consumerIndex = c + 1;
+        return e;
+    }
+
+    /**
+     * 批量出队到数组，仅限消费者线程调用
+     * @return 实际出队的数量
+     */
+    public int drain(E[] array, int offset, int limit) {
+        int n = 0;
+        E e;
+        while (n < limit && (e = poll()) != null)
+            array[offset + n++] = e;
+        return n;
+    }
+
+    public int size() {
+        long size = producerIndex.get() - consumerIndex;
+        if (size < 0)
+            return 0;
+        return (int) Math.min(size, capacity);
+    }
+
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
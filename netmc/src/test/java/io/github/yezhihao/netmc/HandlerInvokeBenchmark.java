@@ -0,0 +1,77 @@
+package io.github.yezhihao.netmc;
+
+import io.github.yezhihao.netmc.core.handler.Handler;
+import io.github.yezhihao.netmc.core.handler.SimpleHandler;
+import io.github.yezhihao.netmc.model.MyHeader;
+import io.github.yezhihao.netmc.model.MyMessage;
+import io.github.yezhihao.netmc.session.Session;
+
+import java.lang.reflect.Method;
+
+/**
+ * 处理方法调用性能对比：反射(Method.invoke + Object[]) vs 生成的调用点(Handler.invoke)
+ * 预热后多轮测量，输出每次调用的平均耗时(ns/op)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class HandlerInvokeBenchmark {
+
+    private static final int warmup = 5;
+    private static final int iterations = 10;
+    private static final int operations = 10_000_000;
+
+    private static Object blackhole;
+
+    public static class BenchEndpoint {
+        private long count;
+
+        public MyMessage handle(MyMessage request, Session session) {
+            count++;
+            return request;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchEndpoint endpoint = new BenchEndpoint();
+        Method method = BenchEndpoint.class.getMethod("handle", MyMessage.class, Session.class);
+        Handler handler = new SimpleHandler(endpoint, method, "bench", false);
+        MyMessage request = new MyMessage(new MyHeader(1, "123", 1), "bench");
+
+        for (int i = 0; i < warmup; i++) {
+            reflect(endpoint, method, handler.parameterTypes, request);
+            direct(handler, request);
+        }
+
+        long reflect = 0, direct = 0;
+        for (int i = 0; i < iterations; i++) {
+            reflect += reflect(endpoint, method, handler.parameterTypes, request);
+            direct += direct(handler, request);
+        }
+        System.out.printf("Method.invoke   %6.2f ns/op%n", (double) reflect / iterations / operations);
+        System.out.printf("Handler.invoke  %6.2f ns/op%n", (double) direct / iterations / operations);
+        System.out.println(endpoint.count + " " + blackhole);
+    }
+
+    /** 原有的反射调用方式 */
+    private static long reflect(Object target, Method method, int[] parameterTypes, MyMessage request) throws Exception {
+        long start = System.nanoTime();
+        Object result = null;
+        for (int i = 0; i < operations; i++) {
+            Object[] args = new Object[parameterTypes.length];
+            for (int j = 0; j < parameterTypes.length; j++)
+                args[j] = parameterTypes[j] == Handler.SESSION ? null : request;
+            result = method.invoke(target, args);
+        }
+        blackhole = result;
+        return System.nanoTime() - start;
+    }
+
+    private static long direct(Handler handler, MyMessage request) throws Exception {
+        long start = System.nanoTime();
+        Object result = null;
+        for (int i = 0; i < operations; i++)
+            result = handler.invoke(request, null);
+        blackhole = result;
+        return System.nanoTime() - start;
+    }
+}
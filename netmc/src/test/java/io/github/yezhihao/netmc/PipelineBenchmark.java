@@ -0,0 +1,110 @@
+package io.github.yezhihao.netmc;
+
+import io.github.yezhihao.netmc.codec.Delimiter;
+import io.github.yezhihao.netmc.codec.MessageDecoder;
+import io.github.yezhihao.netmc.codec.MyMessageEncoder;
+import io.github.yezhihao.netmc.core.HandlerInterceptor;
+import io.github.yezhihao.netmc.core.HandlerMapping;
+import io.github.yezhihao.netmc.core.handler.Handler;
+import io.github.yezhihao.netmc.core.handler.SimpleHandler;
+import io.github.yezhihao.netmc.handler.*;
+import io.github.yezhihao.netmc.model.MyHeader;
+import io.github.yezhihao.netmc.model.MyMessage;
+import io.github.yezhihao.netmc.session.Session;
+import io.github.yezhihao.netmc.session.SessionManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 入站管道性能对比：分级处理器(frameDecoder → adapter → decoder → dispatcher) vs 合并处理器(FusedInboundHandler)
+ * 每次写入包含多个帧的缓冲区，输出每条消息的平均耗时(ns/op)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class PipelineBenchmark {
+
+    private static final int warmup = 5;
+    private static final int iterations = 10;
+    private static final int reads = 200_000;
+    private static final int framesPerRead = 16;
+
+    private static final Delimiter delimiter = new Delimiter("|".getBytes(StandardCharsets.UTF_8), true);
+
+    public static class BenchEndpoint {
+        private long count;
+
+        public void handle(MyMessage request, Session session) {
+            count += request.getSerialNo();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchEndpoint endpoint = new BenchEndpoint();
+        Handler handler = new SimpleHandler(endpoint, BenchEndpoint.class.getMethod("handle", MyMessage.class, Session.class), "bench", false);
+        HandlerMapping mapping = messageId -> handler;
+        SessionManager sessionManager = new SessionManager();
+
+        MessageDecoder messageDecoder = (buf, session) -> new MyMessage(new MyHeader(1, "123", buf.readableBytes()), null);
+        TCPMessageAdapter adapter = new TCPMessageAdapter(sessionManager);
+        MessageDecoderWrapper decoder = new MessageDecoderWrapper(messageDecoder);
+        MessageEncoderWrapper encoder = new MessageEncoderWrapper(new MyMessageEncoder());
+        DispatcherHandler dispatcher = new DispatcherHandler(mapping, new NoopInterceptor(), null);
+
+        EmbeddedChannel classic = new EmbeddedChannel(new DelimiterBasedFrameDecoder(1024, delimiter), adapter, decoder, encoder, dispatcher);
+        EmbeddedChannel fused = new EmbeddedChannel(encoder, new FusedInboundHandler(new DelimiterBasedFrameDecoder(1024, delimiter), adapter, decoder, dispatcher));
+
+        byte[] bytes = "1,123,1;0123456789abcdef0123456789abcdef|".repeat(framesPerRead).getBytes(StandardCharsets.UTF_8);
+        ByteBuf data = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+
+        for (int i = 0; i < warmup; i++) {
+            run(classic, data);
+            run(fused, data);
+        }
+
+        long classicTime = 0, fusedTime = 0;
+        for (int i = 0; i < iterations; i++) {
+            classicTime += run(classic, data);
+            fusedTime += run(fused, data);
+        }
+        long operations = (long) iterations * reads * framesPerRead;
+        System.out.printf("classic %8.2f ns/op%n", (double) classicTime / operations);
+        System.out.printf("fused   %8.2f ns/op%n", (double) fusedTime / operations);
+        System.out.println(endpoint.count);
+    }
+
+    private static long run(EmbeddedChannel channel, ByteBuf data) {
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++)
+            channel.writeInbound(data.retainedDuplicate());
+        return System.nanoTime() - start;
+    }
+
+    private static class NoopInterceptor implements HandlerInterceptor<MyMessage> {
+        @Override
+        public MyMessage notSupported(MyMessage request, Session session) {
+            return null;
+        }
+
+        @Override
+        public boolean beforeHandle(MyMessage request, Session session) {
+            return true;
+        }
+
+        @Override
+        public MyMessage successful(MyMessage request, Session session) {
+            return null;
+        }
+
+        @Override
+        public void afterHandle(MyMessage request, MyMessage response, Session session) {
+        }
+
+        @Override
+        public MyMessage exceptional(MyMessage request, Session session, Throwable e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.yezhihao.netmc;
+
+import io.github.yezhihao.netmc.codec.MyMessageDecoder;
+import io.github.yezhihao.netmc.codec.MyMessageEncoder;
+import io.github.yezhihao.netmc.core.HandlerInterceptor;
+import io.github.yezhihao.netmc.model.MyMessage;
+import io.github.yezhihao.netmc.session.Session;
+import io.github.yezhihao.netmc.session.SessionListener;
+import io.github.yezhihao.netmc.session.SessionManager;
+import io.github.yezhihao.netmc.util.Client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 传输层性能对比：NIO vs 原生epoll(SO_REUSEPORT多acceptor)
+ * 统计建立连接速率(connections/sec)与消息接收速率(messages/sec)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class TransportBenchmark {
+
+    private static final byte[] bytes = "|123,0,1;testtesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttesttest|".getBytes(StandardCharsets.UTF_8);
+
+    public static final String host = "127.0.0.1";
+
+    private static final int connections = 2000;
+    private static final int messages = 200;
+
+    public static void main(String[] args) throws Exception {
+        run("NIO", false, 7612);
+        run("EPOLL", true, 7613);
+    }
+
+    private static void run(String name, boolean nativeTransport, int port) throws Exception {
+        LongAdder sessions = new LongAdder();
+        LongAdder received = new LongAdder();
+
+        Server server = new NettyConfig.Builder()
+                .setPort(port)
+                .setMaxFrameLength(2048)
+                .setDelimiters(new byte[][]{"|".getBytes(StandardCharsets.UTF_8)})
+                .setDecoder(new MyMessageDecoder())
+                .setEncoder(new MyMessageEncoder())
+                .setHandlerMapping(messageId -> null)
+                .setHandlerInterceptor(new CountingInterceptor(received))
+                .setSessionManager(new SessionManager(new SessionListener() {
+                    @Override
+                    public void sessionCreated(Session session) {
+                        sessions.increment();
+                    }
+                }))
+                .setNativeTransport(nativeTransport)
+                .setAcceptorCore(4)
+                .setName(name)
+                .build();
+        server.start();
+
+        long start = System.nanoTime();
+        Client[] clients = Client.TCP(host, port, connections);
+        for (Client client : clients)
+            client.send(bytes);
+        await(sessions, connections);
+        long connectTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            for (Client client : clients)
+                client.send(bytes);
+        }
+        await(received, (long) connections * (messages + 1));
+        long messageTime = System.nanoTime() - start;
+
+        System.out.printf("%s\tconnections/sec: %d\tmessages/sec: %d%n", name,
+                connections * 1000_000_000L / connectTime,
+                (long) connections * messages * 1000_000_000L / messageTime);
+
+        for (Client client : clients)
+            client.close();
+        server.stop();
+    }
+
+    private static void await(LongAdder counter, long expected) throws InterruptedException {
+        while (counter.sum() < expected)
+            Thread.sleep(1L);
+    }
+
+    private static class CountingInterceptor implements HandlerInterceptor<MyMessage> {
+
+        private final LongAdder received;
+
+        private CountingInterceptor(LongAdder received) {
+            this.received = received;
+        }
+
+        @Override
+        public MyMessage notSupported(MyMessage request, Session session) {
+            received.increment();
+            return null;
+        }
+
+        @Override
+        public boolean beforeHandle(MyMessage request, Session session) {
+            return true;
+        }
+
+        @Override
+        public MyMessage successful(MyMessage request, Session session) {
+            return null;
+        }
+
+        @Override
+        public void afterHandle(MyMessage request, MyMessage response, Session session) {
+        }
+
+        @Override
+        public MyMessage exceptional(MyMessage request, Session session, Throwable e) {
+            return null;
+        }
+    }
+}
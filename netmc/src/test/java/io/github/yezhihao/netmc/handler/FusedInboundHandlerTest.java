@@ -0,0 +1,88 @@
+package io.github.yezhihao.netmc.handler;
+
+import io.github.yezhihao.netmc.codec.Delimiter;
+import io.github.yezhihao.netmc.codec.MessageDecoder;
+import io.github.yezhihao.netmc.codec.MyMessageEncoder;
+import io.github.yezhihao.netmc.core.HandlerInterceptor;
+import io.github.yezhihao.netmc.core.HandlerMapping;
+import io.github.yezhihao.netmc.core.handler.Handler;
+import io.github.yezhihao.netmc.core.handler.SimpleHandler;
+import io.github.yezhihao.netmc.model.MyHeader;
+import io.github.yezhihao.netmc.model.MyMessage;
+import io.github.yezhihao.netmc.session.Session;
+import io.github.yezhihao.netmc.session.SessionManager;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 合并处理器中单帧解码异常不影响同一次读取中的其他帧
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class FusedInboundHandlerTest {
+
+    public static class Endpoint {
+        private final List<Integer> serialNos = new ArrayList<>();
+
+        public void handle(MyMessage request, Session session) {
+            serialNos.add(request.getHeader().getSerialNo());
+        }
+    }
+
+    @Test
+    public void testBadFrameBetweenGoodFrames() throws Exception {
+        Endpoint endpoint = new Endpoint();
+        Handler handler = new SimpleHandler(endpoint, Endpoint.class.getMethod("handle", MyMessage.class, Session.class), "test", false);
+        HandlerMapping mapping = messageId -> handler;
+
+        MessageDecoder messageDecoder = (buf, session) -> {
+            String frame = buf.toString(StandardCharsets.UTF_8);
+            return new MyMessage(new MyHeader(1, "123", Integer.parseInt(frame)), null);
+        };
+        Delimiter delimiter = new Delimiter("|".getBytes(StandardCharsets.UTF_8), true);
+        FusedInboundHandler inbound = new FusedInboundHandler(new DelimiterBasedFrameDecoder(1024, delimiter),
+                new TCPMessageAdapter(new SessionManager()),
+                new MessageDecoderWrapper(messageDecoder),
+                new DispatcherHandler(mapping, new NoopInterceptor(), null));
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageEncoderWrapper(new MyMessageEncoder()), inbound);
+
+        channel.writeInbound(Unpooled.copiedBuffer("1|bad|2|", StandardCharsets.UTF_8));
+        channel.checkException();
+        assertEquals(Arrays.asList(1, 2), endpoint.serialNos);
+        channel.finishAndReleaseAll();
+    }
+
+    private static class NoopInterceptor implements HandlerInterceptor<MyMessage> {
+        @Override
+        public MyMessage notSupported(MyMessage request, Session session) {
+            return null;
+        }
+
+        @Override
+        public boolean beforeHandle(MyMessage request, Session session) {
+            return true;
+        }
+
+        @Override
+        public MyMessage successful(MyMessage request, Session session) {
+            return null;
+        }
+
+        @Override
+        public void afterHandle(MyMessage request, MyMessage response, Session session) {
+        }
+
+        @Override
+        public MyMessage exceptional(MyMessage request, Session session, Throwable e) {
+            return null;
+        }
+    }
+}
@@ -4,9 +4,13 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.yezhihao.netmc.core.model.Message;
 import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.protostar.annotation.Field;
+import io.github.yezhihao.protostar.schema.RuntimeSchema;
 import io.github.yezhihao.protostar.util.ToStringBuilder;
 import io.netty.buffer.ByteBuf;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.carm.protocol.commons.MessageId;
@@ -48,6 +52,61 @@ public class JTMessage implements Message {
     protected transient int vehicleId;
     @JsonIgnore
     protected transient int driverId;
+    /** 延迟解码的消息体 */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected transient ByteBuf lazyBody;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected transient RuntimeSchema<JTMessage> lazySchema;
+
+    /** 设置延迟解码的消息体，在首次调用decodeBody()时解析 */
+    public void setLazyBody(RuntimeSchema<JTMessage> schema, ByteBuf body) {
+        this.lazySchema = schema;
+        this.lazyBody = body;
+    }
+
+    /** 消息体是否已解码，延迟解码的消息在调用decodeBody()之前为false */
+    @JsonIgnore
+    public boolean isBodyDecoded() {
+        return lazyBody == null;
+    }
+
+    /** 解码消息体，已解码的直接返回 */
+    public <T extends JTMessage> T decodeBody() {
+        if (lazyBody != null) {
+            synchronized (this) {
+                ByteBuf body = lazyBody;
+                if (body != null) {
+                    lazySchema.mergeFrom(body, this);
+                    lazyBody = null;
+                    lazySchema = null;
+                }
+            }
+        }
+        return (T) this;
+    }
+
+    /** 恢复为初始状态，供对象池复用 */
+    protected void reset() {
+        this.messageId = 0;
+        this.properties = 0;
+        this.protocolVersion = 0;
+        this.clientId = null;
+        this.serialNo = 0;
+        this.packageTotal = null;
+        this.packageNo = null;
+        this.verified = true;
+        this.session = null;
+        this.payload = null;
+        this.extData = null;
+        this.vehicleId = 0;
+        this.driverId = 0;
+        this.lazyBody = null;
+        this.lazySchema = null;
+    }
 
     public JTMessage copyBy(JTMessage that) {
         this.setClientId(that.getClientId());
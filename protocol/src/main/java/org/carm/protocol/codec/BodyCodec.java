@@ -0,0 +1,24 @@
+package org.carm.protocol.codec;
+
+import io.netty.buffer.ByteBuf;
+import org.carm.protocol.basics.JTMessage;
+
+/**
+ * 消息体编解码器(非反射)
+ * 按字段顺序直接读写，结果须与对应的RuntimeSchema逐字节一致
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public interface BodyCodec<T extends JTMessage> {
+
+    Class<T> type();
+
+    T newInstance();
+
+    /** 消息体定长部分的长度，消息体不足该长度时交由RuntimeSchema处理 */
+    int length();
+
+    void mergeFrom(ByteBuf input, T message);
+
+    void writeTo(ByteBuf output, T message);
+}
@@ -0,0 +1,278 @@
+package org.carm.protocol.codec;
+
+import io.github.yezhihao.protostar.Schema;
+import io.github.yezhihao.protostar.SchemaManager;
+import io.github.yezhihao.protostar.schema.RuntimeSchema;
+import io.netty.buffer.ByteBuf;
+import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.commons.JT808;
+import org.carm.protocol.commons.transform.AttributeConverter;
+import org.carm.protocol.commons.transform.AttributeConverterYue;
+import org.carm.protocol.t808.T0001;
+import org.carm.protocol.t808.T0200;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * 高频消息的消息体编解码器(手写，仅覆盖T0001、T0200，其余消息仍由RuntimeSchema处理)
+ * 仅当SchemaManager中对应版本的消息类型与编解码器一致时启用，字段定义的一致性由BodyCodecTest在构建时校验
+ * 不包含：按@Message/@Field生成全部消息的编解码器、消息头的装箱字段、T8604的lengthExpression、逐条消息的getRuntimeSchema查找
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class BodyCodecs {
+
+    private static final int[] MESSAGE_IDS = {JT808.终端通用应答, JT808.平台通用应答, JT808.位置信息汇报};
+    private static final int MIN_VERSION = -1;
+    private static final int MAX_VERSION = 1;
+
+    private static final Schema ATTRIBUTE_2013 = new AttributeConverter();
+    private static final Schema ATTRIBUTE_2019 = new AttributeConverterYue();
+
+    /** 按版本记录已启用的消息ID */
+    private final BitSet[] enabled = new BitSet[MAX_VERSION - MIN_VERSION + 1];
+
+    private boolean lazyAttributes;
+    private boolean recyclable;
+    private T0200Codec t0200_2013 = T0200Codec.V2013;
+    private T0200Codec t0200_2019 = T0200Codec.V2019;
+
+    public BodyCodecs(SchemaManager schemaManager) {
+        for (int version = MIN_VERSION; version <= MAX_VERSION; version++) {
+            BitSet ids = new BitSet();
+            for (int messageId : MESSAGE_IDS) {
+                BodyCodec<?> codec = codec(messageId, version);
+                RuntimeSchema<JTMessage> schema = schemaManager.getRuntimeSchema(messageId, version);
+                if (schema != null && schema.newInstance().getClass() == codec.type())
+                    ids.set(messageId);
+            }
+            enabled[version - MIN_VERSION] = ids;
+        }
+    }
+
+    /**
+     * 位置信息汇报(0x0200)的附加信息保留为原始字节，设备时间保留为秒级时间戳
+     * 在首次调用T0200.getAttributes()、getDeviceTime()时才创建对象
+     */
+    public void setLazyAttributes(boolean lazyAttributes) {
+        this.lazyAttributes = lazyAttributes;
+        this.t0200_2013 = new T0200Codec(ATTRIBUTE_2013, lazyAttributes, recyclable);
+        this.t0200_2019 = new T0200Codec(ATTRIBUTE_2019, lazyAttributes, recyclable);
+    }
+
+    /**
+     * 位置信息汇报(0x0200)从对象池获取，引用计数归零后回收
+     * @see io.github.yezhihao.netmc.core.model.Recyclable
+     */
+    public void setRecyclable(boolean recyclable) {
+        this.recyclable = recyclable;
+        this.t0200_2013 = new T0200Codec(ATTRIBUTE_2013, lazyAttributes, recyclable);
+        this.t0200_2019 = new T0200Codec(ATTRIBUTE_2019, lazyAttributes, recyclable);
+    }
+
+    /** @return 未启用时返回null */
+    public BodyCodec<JTMessage> get(int messageId, int version) {
+        if (version < MIN_VERSION || version > MAX_VERSION || !enabled[version - MIN_VERSION].get(messageId))
+            return null;
+        if (messageId == JT808.位置信息汇报)
+            return (BodyCodec) (version == 1 ? t0200_2019 : t0200_2013);
+        return (BodyCodec) codec(messageId, version);
+    }
+
+    public static BodyCodec<? extends JTMessage> codec(int messageId, int version) {
+        switch (messageId) {
+            case JT808.终端通用应答:
+            case JT808.平台通用应答:
+                return T0001Codec.INSTANCE;
+            case JT808.位置信息汇报:
+                return version == 1 ? T0200Codec.V2019 : T0200Codec.V2013;
+            default:
+                return null;
+        }
+    }
+
+    public static class T0001Codec implements BodyCodec<T0001> {
+
+        public static final T0001Codec INSTANCE = new T0001Codec();
+
+        @Override
+        public Class<T0001> type() {
+            return T0001.class;
+        }
+
+        @Override
+        public T0001 newInstance() {
+            return new T0001();
+        }
+
+        @Override
+        public int length() {
+            return 5;
+        }
+
+        @Override
+        public void mergeFrom(ByteBuf input, T0001 message) {
+            message.setResponseSerialNo(input.readUnsignedShort());
+            message.setResponseMessageId(input.readUnsignedShort());
+            message.setResultCode(input.readUnsignedByte());
+        }
+
+        @Override
+        public void writeTo(ByteBuf output, T0001 message) {
+            output.writeShort(message.getResponseSerialNo());
+            output.writeShort(message.getResponseMessageId());
+            output.writeByte(message.getResultCode());
+        }
+    }
+
+    public static class T0200Codec implements BodyCodec<T0200> {
+
+        public static final T0200Codec V2013 = new T0200Codec(ATTRIBUTE_2013, false, false);
+        public static final T0200Codec V2019 = new T0200Codec(ATTRIBUTE_2019, false, false);
+
+        private final Schema<Map> attributeSchema;
+        private final boolean lazy;
+        private final boolean recyclable;
+
+        private T0200Codec(Schema attributeSchema, boolean lazy, boolean recyclable) {
+            this.attributeSchema = attributeSchema;
+            this.lazy = lazy;
+            this.recyclable = recyclable;
+        }
+
+        @Override
+        public Class<T0200> type() {
+            return T0200.class;
+        }
+
+        @Override
+        public T0200 newInstance() {
+            return recyclable ? T0200.newInstance() : new T0200();
+        }
+
+        @Override
+        public int length() {
+            return 28;
+        }
+
+        @Override
+        public void mergeFrom(ByteBuf input, T0200 message) {
+            message.setWarnBit(input.readInt());
+            message.setStatusBit(input.readInt());
+            message.setLatitude(input.readInt());
+            message.setLongitude(input.readInt());
+            message.setAltitude(input.readUnsignedShort());
+            message.setSpeed(input.readUnsignedShort());
+            message.setDirection(input.readUnsignedShort());
+            if (lazy) {
+                message.setDeviceTimeSeconds(readDateTimeSeconds(input));
+                if (input.isReadable()) {
+                    byte[] bytes = new byte[input.readableBytes()];
+                    input.readBytes(bytes);
+                    message.setAttributeBytes(attributeSchema, bytes);
+                }
+            } else {
+                message.setDeviceTime(readDateTime(input));
+                if (input.isReadable())
+                    message.setAttributes(attributeSchema.readFrom(input));
+            }
+        }
+
+        @Override
+        public void writeTo(ByteBuf output, T0200 message) {
+            output.writeInt(message.getWarnBit());
+            output.writeInt(message.getStatusBit());
+            output.writeInt(message.getLatitude());
+            output.writeInt(message.getLongitude());
+            output.writeShort(message.getAltitude());
+            output.writeShort(message.getSpeed());
+            output.writeShort(message.getDirection());
+            writeDateTime(output, message.getDeviceTime());
+            byte[] bytes = message.getAttributeBytes();
+            if (bytes != null) {
+                output.writeBytes(bytes);
+                return;
+            }
+            Map<Integer, Object> attributes = message.getAttributes();
+            if (attributes != null)
+                attributeSchema.writeTo(output, attributes);
+        }
+    }
+
+    /** 6字节BCD时间(YYMMDDHHMMSS)，非法时间返回null */
+    public static LocalDateTime readDateTime(ByteBuf input) {
+        int year = bcd(input.readByte()) + 2000;
+        int month = bcd(input.readByte());
+        int day = bcd(input.readByte());
+        int hour = bcd(input.readByte());
+        int minute = bcd(input.readByte());
+        int second = bcd(input.readByte());
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /** 6字节BCD时间(YYMMDDHHMMSS)按GMT+8转换为秒级时间戳，不创建对象，非法时间返回0 */
+    public static long readDateTimeSeconds(ByteBuf input) {
+        int year = bcd(input.readByte()) + 2000;
+        int month = bcd(input.readByte());
+        int day = bcd(input.readByte());
+        int hour = bcd(input.readByte());
+        int minute = bcd(input.readByte());
+        int second = bcd(input.readByte());
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour > 23 || minute > 59 || second > 59)
+            return 0L;
+        return epochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - 8 * 3600;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /** 公历日期距1970-01-01的天数(year >= 0) */
+    private static long epochDay(int year, int month, int day) {
+        if (month <= 2)
+            year--;
+        int era = year / 400;
+        int yoe = year - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    public static void writeDateTime(ByteBuf output, LocalDateTime value) {
+        if (value == null) {
+            output.writeZero(6);
+            return;
+        }
+        output.writeByte(bcd(value.getYear() % 100));
+        output.writeByte(bcd(value.getMonthValue()));
+        output.writeByte(bcd(value.getDayOfMonth()));
+        output.writeByte(bcd(value.getHour()));
+        output.writeByte(bcd(value.getMinute()));
+        output.writeByte(bcd(value.getSecond()));
+    }
+
+    private static int bcd(byte b) {
+        return ((b >> 4) & 0xF) * 10 + (b & 0xF);
+    }
+
+    private static int bcd(int num) {
+        return ((num / 10) << 4) | (num % 10);
+    }
+}
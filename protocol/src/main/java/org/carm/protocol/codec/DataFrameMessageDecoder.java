@@ -1,5 +1,6 @@
 package org.carm.protocol.codec;
 
+import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.netmc.util.ByteBufUtils;
 import io.github.yezhihao.protostar.SchemaManager;
 import io.github.yezhihao.protostar.schema.RuntimeSchema;
@@ -24,13 +25,13 @@ public class DataFrameMessageDecoder extends JTMessageDecoder {
     }
 
     @Override
-    public JTMessage decode(ByteBuf input) {
+    public JTMessage decode(ByteBuf input, Session session) {
         if (ByteBufUtils.startsWith(input, dataFramePrefix)) {
             DataPacket message = new DataPacket();
             message.setPayload(input);
             dataFrameSchema.mergeFrom(input, message);
             return message;
         }
-        return super.decode(input);
+        return super.decode(input, session);
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package org.carm.protocol.codec;
+
+import io.github.yezhihao.netmc.session.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.commons.JT808;
+import org.carm.protocol.t808.T0001;
+
+import java.util.Objects;
+
+/**
+ * 平台通用应答(0x8001)报文模板，每个会话一份
+ * 首次应答走常规编码并记录编码结果(转义前)，之后仅修改流水号、应答字段并重新计算校验码，输出与常规编码完全一致
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class GeneralResponse {
+
+    private static final ByteBufAllocator ALLOC = PooledByteBufAllocator.DEFAULT;
+
+    private static final int BODY_LENGTH = 0b0000_0011_1111_1111;
+
+    /** 应答消息体长度：应答流水号(2) + 应答ID(2) + 结果(1) */
+    private static final int BODY_SIZE = 5;
+
+    private volatile Template template;
+
+    /**
+     * 创建平台通用应答，编码时优先使用模板
+     */
+    public T0001 response(JTMessage request, int serialNo, int resultCode) {
+        Response response = new Response(this);
+        response.copyBy(request);
+        response.setMessageId(JT808.平台通用应答);
+        response.setSerialNo(serialNo);
+
+        response.setResponseSerialNo(request.getSerialNo());
+        response.setResponseMessageId(request.getMessageId());
+        response.setResultCode(resultCode);
+        return response;
+    }
+
+    /**
+     * 终端心跳快速应答，直接比对原始报文与模板中的版本号和终端手机号，不创建JTMessage
+     * @return 不满足条件(模板未生成、含转义、终端信息不一致、校验失败)时返回null，由常规流程处理
+     */
+    public ByteBuf heartbeat(ByteBuf input, Session session) {
+        Template template = this.template;
+        if (template == null)
+            return null;
+        byte[] bytes = template.bytes;
+        int headLength = bytes.length - BODY_SIZE;
+
+        int low = input.readerIndex();
+        int high = input.writerIndex();
+        if (high - low < headLength + 1)
+            return null;
+        if (input.getByte(low) == 0x7e)
+            low++;
+        if (input.getByte(high - 1) == 0x7e)
+            high--;
+        if (high - low != headLength + 1 || input.indexOf(low, high, (byte) 0x7d) >= 0)
+            return null;
+        if (input.getUnsignedShort(low) != JT808.终端心跳)
+            return null;
+        if (input.getUnsignedShort(low + 2) != (template.properties & ~BODY_LENGTH))
+            return null;
+
+        byte checksum = 0;
+        for (int i = 0; i < 4; i++)
+            checksum ^= input.getByte(low + i);
+        for (int i = 4; i < headLength - 2; i++) {
+            byte b = input.getByte(low + i);
+            if (b != bytes[i])
+                return null;
+            checksum ^= b;
+        }
+        for (int i = headLength - 2; i <= headLength; i++)
+            checksum ^= input.getByte(low + i);
+        if (checksum != 0)
+            return null;
+
+        int serialNo = input.getUnsignedShort(low + headLength - 2);
+        return encode(template, session.nextSerialNo(), serialNo, JT808.终端心跳, T0001.Success);
+    }
+
+    /** 使用模板编码，模板不可用时返回null */
+    ByteBuf encode(Response response) {
+        Template template = this.template;
+        if (template == null || !template.matches(response))
+            return null;
+        return encode(template, response.getSerialNo(), response.getResponseSerialNo(), response.getResponseMessageId(), response.getResultCode());
+    }
+
+    /** 记录常规编码的结果 */
+    void update(Response response, ByteBuf output, int index, int length) {
+        byte[] bytes = new byte[length];
+        output.getBytes(index, bytes);
+        this.template = new Template(response, bytes);
+    }
+
+    private static ByteBuf encode(Template template, int serialNo, int responseSerialNo, int responseMessageId, int resultCode) {
+        byte[] bytes = template.bytes;
+        int headLength = bytes.length - BODY_SIZE;
+
+        ByteBuf output = ALLOC.buffer(1 + bytes.length + 3);
+        output.writerIndex(1);
+        output.writeBytes(bytes, 0, headLength - 2);
+        output.writeShort(serialNo);
+        output.writeShort(responseSerialNo);
+        output.writeShort(responseMessageId);
+        output.writeByte(resultCode);
+        return JTMessageEncoder.frame(output);
+    }
+
+    private static final class Template {
+        private final String clientId;
+        private final int protocolVersion;
+        private final int properties;
+        private final byte[] bytes;
+
+        private Template(JTMessage message, byte[] bytes) {
+            this.clientId = message.getClientId();
+            this.protocolVersion = message.getProtocolVersion();
+            this.properties = message.getProperties();
+            this.bytes = bytes;
+        }
+
+        private boolean matches(JTMessage message) {
+            return protocolVersion == message.getProtocolVersion()
+                    && ((properties ^ message.getProperties()) & ~BODY_LENGTH) == 0
+                    && Objects.equals(clientId, message.getClientId());
+        }
+    }
+
+    /** 由模板编码的平台通用应答 */
+    public static class Response extends T0001 {
+
+        private final transient GeneralResponse template;
+
+        private Response(GeneralResponse template) {
+            this.template = template;
+        }
+
+        GeneralResponse template() {
+            return template;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.carm.protocol.codec;
 
 import io.github.yezhihao.netmc.codec.MessageDecoder;
 import io.github.yezhihao.netmc.codec.MessageEncoder;
+import io.github.yezhihao.netmc.session.Packet;
 import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.protostar.SchemaManager;
 import io.github.yezhihao.protostar.util.Explain;
@@ -68,7 +69,16 @@ public class JTMessageAdapter implements MessageEncoder<JTMessage>, MessageDecod
             log.info("{}\n<<<<<-原始消息,hex[{}]", session, ByteBufUtil.hexDump(input, 0, input.writerIndex()));
         
         try {
-            JTMessage message = messageDecoder.decode(input);
+            GeneralResponse template = generalResponse(session);
+            if (template != null) {
+                ByteBuf response = template.heartbeat(input, session);
+                if (response != null) {
+                    session.channel().writeAndFlush(Packet.of(session, response));
+                    return null;
+                }
+            }
+
+            JTMessage message = messageDecoder.decode(input, session);
             if (message != null)
                 message.setSession(session);
             decodeLog(session, message, input);
@@ -81,6 +91,13 @@ public class JTMessageAdapter implements MessageEncoder<JTMessage>, MessageDecod
         }
     }
 
+    /**
+     * 会话的通用应答模板，返回null时不启用终端心跳快速应答
+     */
+    protected GeneralResponse generalResponse(Session session) {
+        return null;
+    }
+
     public void encodeLog(Session session, JTMessage message, ByteBuf output) {
         if (log.isInfoEnabled())
             log.info("{}\n>>>>>-{},hex[{}]", session, message, ByteBufUtil.hexDump(output));
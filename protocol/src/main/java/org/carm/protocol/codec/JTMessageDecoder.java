@@ -1,5 +1,6 @@
 package org.carm.protocol.codec;
 
+import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.protostar.SchemaManager;
 import io.github.yezhihao.protostar.schema.RuntimeSchema;
 import io.github.yezhihao.protostar.util.ArrayMap;
@@ -9,8 +10,7 @@ import org.carm.protocol.basics.JTMessage;
 import org.carm.protocol.commons.Bit;
 import org.carm.protocol.commons.JTUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
 
 /**
  * JT协议解码器
@@ -19,31 +19,107 @@ import java.util.List;
  */
 public class JTMessageDecoder {
 
-    private static final ByteBufAllocator ALLOC = PooledByteBufAllocator.DEFAULT;
+    protected static final ByteBufAllocator ALLOC = PooledByteBufAllocator.DEFAULT;
 
     private final SchemaManager schemaManager;
 
     private final ArrayMap<RuntimeSchema> headerSchemaMap;
 
+    private final BodyCodecs bodyCodecs;
+
+    /** 延迟解码消息体的消息ID */
+    private final BitSet lazyBodies = new BitSet();
+
     public JTMessageDecoder(String... basePackages) {
         this.schemaManager = new SchemaManager(basePackages);
         this.headerSchemaMap = schemaManager.getRuntimeSchema(JTMessage.class);
+        this.bodyCodecs = new BodyCodecs(schemaManager);
     }
 
     public JTMessageDecoder(SchemaManager schemaManager) {
         this.schemaManager = schemaManager;
         this.headerSchemaMap = schemaManager.getRuntimeSchema(JTMessage.class);
+        this.bodyCodecs = new BodyCodecs(schemaManager);
+    }
+
+    /**
+     * 仅解码消息头，消息体在首次调用JTMessage.decodeBody()时解析(适用于业务不关心消息体的消息)
+     */
+    public JTMessageDecoder setLazyBody(int... messageIds) {
+        for (int messageId : messageIds)
+            lazyBodies.set(messageId);
+        return this;
+    }
+
+    /**
+     * 位置信息汇报的附加信息和设备时间按需解析
+     * @see BodyCodecs#setLazyAttributes(boolean)
+     */
+    public JTMessageDecoder setLazyAttributes(boolean lazyAttributes) {
+        bodyCodecs.setLazyAttributes(lazyAttributes);
+        return this;
+    }
+
+    /**
+     * 位置信息汇报从对象池获取，处理完成后回收
+     * @see BodyCodecs#setRecyclable(boolean)
+     */
+    public JTMessageDecoder setRecyclable(boolean recyclable) {
+        bodyCodecs.setRecyclable(recyclable);
+        return this;
     }
 
     public JTMessage decode(ByteBuf input) {
-        return decode(input, null);
+        return decode(input, (Session) null);
+    }
+
+    /** @param session 分包消息按会话缓存 */
+    public JTMessage decode(ByteBuf input, Session session) {
+        return decode(input, session, null);
     }
 
     public JTMessage decode(ByteBuf input, Explain explain) {
+        return decode(input, null, explain);
+    }
+
+    private JTMessage decode(ByteBuf input, Session session, Explain explain) {
         JTMessage message = new JTMessage();
-        ByteBuf buf = unescape(input);
+        int low = input.readerIndex();
+        int high = input.writerIndex();
+        if (input.getByte(low) == 0x7e)
+            low++;
+        if (input.getByte(high - 1) == 0x7e)
+            high--;
+
+        //单次遍历完成反转义和校验，无转义时直接使用原报文切片
+        ByteBuf buf;
+        long scan = scan(input, low, high - 1);
+        int mark = (int) (scan >>> 32);
+        int checksum = (int) scan;
+        boolean copied = mark != high - 1;
+        if (copied) {
+            buf = ALLOC.buffer(high - low);
+            checksum = unescape(input, low, high, mark, checksum, buf);
+        } else {
+            checksum ^= input.getByte(mark);
+            buf = input.slice(low, high - low);
+        }
+        boolean verified = (checksum & 0xFF) == 0;
+
+        boolean release = copied;
+        try {
+            message = decode(input, buf, verified, message, session, explain);
+            //报文体中引用了缓冲区的消息(如多媒体数据)，由消息持有
+            if (!message.noBuffer() && !message.isSubpackage())
+                release = false;
+            return message;
+        } finally {
+            if (release)
+                buf.release();
+        }
+    }
 
-        boolean verified = verify(buf);
+    private JTMessage decode(ByteBuf input, ByteBuf buf, boolean verified, JTMessage message, Session session, Explain explain) {
         int messageId = buf.getUnsignedShort(0);
         int properties = buf.getUnsignedShort(2);
 
@@ -55,9 +131,16 @@ public class JTMessageDecoder {
         int headLen = JTUtils.headerLength(version, isSubpackage);
 
         RuntimeSchema<JTMessage> headSchema = headerSchemaMap.get(version);
-        RuntimeSchema<JTMessage> bodySchema = schemaManager.getRuntimeSchema(messageId, version);
-
-        if (bodySchema != null)
+        RuntimeSchema<JTMessage> bodySchema = null;
+        BodyCodec<JTMessage> codec = null;
+        if (explain == null && !isSubpackage && !lazyBodies.get(messageId))
+            codec = bodyCodecs.get(messageId, version);
+        if (codec == null)
+            bodySchema = schemaManager.getRuntimeSchema(messageId, version);
+
+        if (codec != null)
+            message = codec.newInstance();
+        else if (bodySchema != null)
             message = bodySchema.newInstance();
         message.setVerified(verified);
         message.setPayload(input);
@@ -68,8 +151,19 @@ public class JTMessageDecoder {
         buf.writerIndex(writerIndex - 1);
 
         int realVersion = message.getProtocolVersion();
-        if (realVersion != version)
+        if (codec != null) {
+            if (realVersion != version)
+                codec = bodyCodecs.get(messageId, realVersion);
+            //定长部分不完整的报文交由RuntimeSchema处理
+            if (codec != null && buf.writerIndex() - headLen >= codec.length()) {
+                buf.readerIndex(headLen);
+                codec.mergeFrom(buf, message);
+                return message;
+            }
+            bodySchema = schemaManager.getRuntimeSchema(messageId, realVersion);
+        } else if (realVersion != version) {
             bodySchema = schemaManager.getRuntimeSchema(messageId, realVersion);
+        }
 
         if (bodySchema != null) {
             int bodyLen = message.getBodyLength();
@@ -79,15 +173,19 @@ public class JTMessageDecoder {
                 ByteBuf bytes = ALLOC.buffer(bodyLen);
                 buf.getBytes(headLen, bytes);
 
-                ByteBuf[] packages = addAndGet(message, bytes);
-                if (packages == null)
+                message.setSession(session);
+                ByteBuf bodyBuf = addAndGet(message, bytes);
+                if (bodyBuf == null)
                     return message;
 
-                ByteBuf bodyBuf = Unpooled.wrappedBuffer(packages);
                 bodySchema.mergeFrom(bodyBuf, message, explain);
                 if (message.noBuffer()) {
                     bodyBuf.release();
                 }
+            } else if (explain == null && lazyBodies.get(messageId)) {
+                byte[] bytes = new byte[buf.writerIndex() - headLen];
+                buf.getBytes(headLen, bytes);
+                message.setLazyBody(bodySchema, Unpooled.wrappedBuffer(bytes));
             } else {
                 buf.readerIndex(headLen);
                 bodySchema.mergeFrom(buf, message, explain);
@@ -97,7 +195,13 @@ public class JTMessageDecoder {
         return message;
     }
 
-    protected ByteBuf[] addAndGet(JTMessage message, ByteBuf bytes) {
+    /**
+     * 缓存分包，全部到达后返回合并的消息体
+     * @param bytes 分包的消息体，由实现类负责释放
+     * @return 连续的消息体缓冲区，未到齐时返回null
+     */
+    protected ByteBuf addAndGet(JTMessage message, ByteBuf bytes) {
+        bytes.release();
         return null;
     }
 
@@ -107,49 +211,66 @@ public class JTMessageDecoder {
         return checkCode == buf.getByte(buf.writerIndex() - 1);
     }
 
-    /** 反转义 */
-    public static ByteBuf unescape(ByteBuf source) {
-        int low = source.readerIndex();
-        int high = source.writerIndex();
-
-        if (source.getByte(low) == 0x7e)
-            low++;
-
-        if (source.getByte(high - 1) == 0x7e)
-            high--;
-
-        int mark = source.indexOf(low, high - 1, (byte) 0x7d);
-        if (mark == -1) {
-            return source.slice(low, high - low);
+    /**
+     * 反转义，从第一个转义位mark开始，将[low, high)的剩余报文复制到dst，同时累计异或校验
+     * @return 包含校验码在内的全部字节异或值，校验通过时为0
+     */
+    private static int unescape(ByteBuf source, int low, int high, int mark, int checksum, ByteBuf dst) {
+        int start = low;
+        for (; ; ) {
+            dst.writeBytes(source, start, mark - start);
+            byte second = source.getByte(mark + 1);
+            if (second == 0x01) {
+                dst.writeByte(0x7d);
+                checksum ^= 0x7d;
+            } else if (second == 0x02) {
+                dst.writeByte(0x7e);
+                checksum ^= 0x7e;
+            } else {
+                dst.writeByte(0x7d).writeByte(second);
+                checksum ^= 0x7d ^ second;
+            }
+            start = mark + 2;
+            if (start >= high)
+                return checksum;
+
+            long scan = scan(source, start, high - 1);
+            mark = (int) (scan >>> 32);
+            checksum ^= (int) scan;
+            if (mark == high - 1) {
+                dst.writeBytes(source, start, high - start);
+                return checksum ^ source.getByte(mark);
+            }
         }
-
-        List<ByteBuf> bufList = new ArrayList<>(3);
-
-        int len;
-        do {
-
-            len = mark + 2 - low;
-            bufList.add(slice(source, low, len));
-            low += len;
-
-            mark = source.indexOf(low, high, (byte) 0x7d);
-        } while (mark > 0);
-
-        bufList.add(source.slice(low, high - low));
-
-        return new CompositeByteBuf(ALLOC, false, bufList.size(), bufList);
     }
 
-    /** 截取转义前报文，并还原转义位 */
-    protected static ByteBuf slice(ByteBuf byteBuf, int index, int length) {
-        byte second = byteBuf.getByte(index + length - 1);
-        if (second == 0x01) {
-            return byteBuf.slice(index, length - 1);
-        } else if (second == 0x02) {
-            byteBuf.setByte(index + length - 2, 0x7e);
-            return byteBuf.slice(index, length - 1);
-        } else {
-            return byteBuf.slice(index, length);
+    private static final long ESCAPE = 0x7d7d7d7d7d7d7d7dL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * 在[index, end)中查找转义符0x7d，同时对查找过的字节异或，按8字节(SWAR)批量处理
+     * @return 高32位为0x7d的位置(未找到时为end)，低8位为异或值
+     */
+    private static long scan(ByteBuf buf, int index, int end) {
+        long x = 0L;
+        for (; index + 8 <= end; index += 8) {
+            long word = buf.getLong(index);
+            long t = word ^ ESCAPE;
+            if (((t - LOW_BITS) & ~t & HIGH_BITS) != 0L)
+                break;
+            x ^= word;
+        }
+        x ^= x >>> 32;
+        x ^= x >>> 16;
+        x ^= x >>> 8;
+        int checksum = (int) x & 0xFF;
+        for (; index < end; index++) {
+            byte b = buf.getByte(index);
+            if (b == 0x7d)
+                break;
+            checksum ^= b & 0xFF;
         }
+        return ((long) index << 32) | checksum;
     }
 }
\ No newline at end of file
@@ -10,8 +10,6 @@ import io.netty.util.ByteProcessor;
 import org.carm.protocol.basics.JTMessage;
 import org.carm.protocol.commons.JTUtils;
 
-import java.util.LinkedList;
-
 /**
  * JT协议编码器
  * @author yezhihao
@@ -25,14 +23,18 @@ public class JTMessageEncoder {
 
     private final ArrayMap<RuntimeSchema> headerSchemaMap;
 
+    private final BodyCodecs bodyCodecs;
+
     public JTMessageEncoder(String... basePackages) {
         this.schemaManager = new SchemaManager(basePackages);
         this.headerSchemaMap = schemaManager.getRuntimeSchema(JTMessage.class);
+        this.bodyCodecs = new BodyCodecs(schemaManager);
     }
 
     public JTMessageEncoder(SchemaManager schemaManager) {
         this.schemaManager = schemaManager;
         this.headerSchemaMap = schemaManager.getRuntimeSchema(JTMessage.class);
+        this.bodyCodecs = new BodyCodecs(schemaManager);
     }
 
     public ByteBuf encode(JTMessage message) {
@@ -40,41 +42,58 @@ public class JTMessageEncoder {
     }
 
     public ByteBuf encode(JTMessage message, Explain explain) {
+        GeneralResponse template = null;
+        if (explain == null && message instanceof GeneralResponse.Response) {
+            template = ((GeneralResponse.Response) message).template();
+            ByteBuf output = template.encode((GeneralResponse.Response) message);
+            if (output != null)
+                return output;
+        }
+
         int version = message.getProtocolVersion();
         int headLength = JTUtils.headerLength(version, false);
         int bodyLength = 0;
 
         Schema headSchema = headerSchemaMap.get(version);
-        Schema bodySchema = schemaManager.getRuntimeSchema(message.getMessageId(), version);
+        Schema bodySchema = null;
+        BodyCodec<JTMessage> codec = explain == null ? bodyCodecs.get(message.getMessageId(), version) : null;
+        if (codec == null || !codec.type().isInstance(message)) {
+            codec = null;
+            bodySchema = schemaManager.getRuntimeSchema(message.getMessageId(), version);
+        }
 
+        //首字节预留给标识位，尾部预留校验码(转义后最多2字节)和标识位
         ByteBuf output;
-        if (bodySchema != null) {
-            output = ALLOC.buffer(headLength + bodySchema.length());
-            output.writerIndex(headLength);
+        if (codec != null) {
+            output = ALLOC.buffer(1 + headLength + codec.length() + 3);
+            output.writerIndex(1 + headLength);
+            codec.writeTo(output, message);
+            bodyLength = output.writerIndex() - headLength - 1;
+        } else if (bodySchema != null) {
+            output = ALLOC.buffer(1 + headLength + bodySchema.length() + 3);
+            output.writerIndex(1 + headLength);
             bodySchema.writeTo(output, message, explain);
-            bodyLength = output.writerIndex() - headLength;
+            bodyLength = output.writerIndex() - headLength - 1;
         } else {
-            output = ALLOC.buffer(headLength, 21);
+            output = ALLOC.buffer(1 + headLength + 3, 25);
         }
 
         if (bodyLength <= 1023) {
             message.setBodyLength(bodyLength);
 
             int writerIndex = output.writerIndex();
-            if (writerIndex > 0) {
-                output.writerIndex(0);
-                headSchema.writeTo(output, message, explain);
+            output.writerIndex(1);
+            headSchema.writeTo(output, message, explain);
+            if (writerIndex > 1)
                 output.writerIndex(writerIndex);
-            } else {
-                headSchema.writeTo(output, message, explain);
-            }
 
-            output = sign(output);
-            output = escape(output);
+            if (template != null)
+                template.update((GeneralResponse.Response) message, output, 1, output.writerIndex() - 1);
+            output = frame(output);
 
         } else {
 
-            ByteBuf[] slices = slices(output, headLength, 1023);
+            ByteBuf[] slices = slices(output, 1 + headLength, 1023);
             int total = slices.length;
 
             CompositeByteBuf _allBuf = new CompositeByteBuf(ALLOC, false, total);
@@ -90,14 +109,12 @@ public class JTMessageEncoder {
                 message.setPackageNo(i + 1);
                 message.setBodyLength(slice.readableBytes());
 
-                ByteBuf headBuf = ALLOC.buffer(headLength, headLength);
-                headSchema.writeTo(headBuf, message, explain);
-                ByteBuf msgBuf = new CompositeByteBuf(ALLOC, false, 2)
-                        .addComponent(true, 0, headBuf)
-                        .addComponent(true, 1, slice);
-                msgBuf = sign(msgBuf);
-                msgBuf = escape(msgBuf);
-                _allBuf.addComponent(true, i, msgBuf);
+                ByteBuf msgBuf = ALLOC.buffer(1 + headLength + slice.readableBytes() + 3);
+                msgBuf.writerIndex(1);
+                headSchema.writeTo(msgBuf, message, explain);
+                msgBuf.writeBytes(slice);
+                slice.release();
+                _allBuf.addComponent(true, i, frame(msgBuf));
             }
         }
         return output;
@@ -117,59 +134,83 @@ public class JTMessageEncoder {
         return slices;
     }
 
-    /** 签名 */
-    public static ByteBuf sign(ByteBuf buf) {
-        byte checkCode = JTUtils.bcc(buf, 0);
-        buf.writeByte(checkCode);
-        return buf;
-    }
-
-    private static final ByteProcessor searcher = value -> !(value == 0x7d || value == 0x7e);
-
-    /** 转义处理 */
-    public static ByteBuf escape(ByteBuf source) {
-        int low = source.readerIndex();
-        int high = source.writerIndex();
-
-        LinkedList<ByteBuf> bufList = new LinkedList<>();
-        int mark, len;
-        while ((mark = source.forEachByte(low, high - low, searcher)) > 0) {
-
-            len = mark + 1 - low;
-            ByteBuf[] slice = slice(source, low, len);
-            bufList.add(slice[0]);
-            bufList.add(slice[1]);
-            low += len;
-        }
+    /**
+     * 计算校验码、转义并添加首尾标识位
+     * @param buf 首字节为预留的标识位，[1, writerIndex)为消息头和消息体
+     * @return 无需转义时直接在原缓冲区上完成，否则按转义后的长度分配新缓冲区并释放原缓冲区
+     */
+    public static ByteBuf frame(ByteBuf buf) {
+        int end = buf.writerIndex();
+        long scan = scan(buf, 1, end);
+        int escapes = (int) (scan >>> 32);
+        byte checkCode = (byte) scan;
 
-        if (bufList.isEmpty()) {
-            bufList.add(source);
+        ByteBuf output;
+        if (escapes == 0) {
+            output = buf.setByte(0, 0x7e);
         } else {
-            bufList.add(source.slice(low, high - low));
+            int checkLength = (checkCode == 0x7d || checkCode == 0x7e) ? 2 : 1;
+            output = ALLOC.buffer(end + escapes + checkLength + 1);
+            output.writeByte(0x7e);
+
+            int low = 1, mark;
+            while ((mark = buf.forEachByte(low, end - low, searcher)) >= 0) {
+                output.writeBytes(buf, low, mark - low);
+                writeEscaped(output, buf.getByte(mark));
+                low = mark + 1;
+            }
+            output.writeBytes(buf, low, end - low);
+            buf.release();
         }
-
-        ByteBuf delimiter = Unpooled.buffer(1, 1).writeByte(0x7e).retain();
-        bufList.addFirst(delimiter);
-        bufList.addLast(delimiter);
-
-        CompositeByteBuf byteBufs = new CompositeByteBuf(ALLOC, false, bufList.size());
-        byteBufs.addComponents(true, bufList);
-        return byteBufs;
+        writeEscaped(output, checkCode);
+        output.writeByte(0x7e);
+        return output;
     }
 
-    /** 截断转义前报文，并转义 */
-    protected static ByteBuf[] slice(ByteBuf byteBuf, int index, int length) {
-        byte first = byteBuf.getByte(index + length - 1);
+    private static void writeEscaped(ByteBuf output, byte value) {
+        if (value == 0x7d)
+            output.writeShort(0x7d01);
+        else if (value == 0x7e)
+            output.writeShort(0x7d02);
+        else
+            output.writeByte(value);
+    }
 
-        ByteBuf[] bufs = new ByteBuf[2];
-        bufs[0] = byteBuf.retainedSlice(index, length);
+    private static final ByteProcessor searcher = value -> !(value == 0x7d || value == 0x7e);
 
-        if (first == 0x7d) {
-            bufs[1] = Unpooled.buffer(1, 1).writeByte(0x01);
-        } else {
-            byteBuf.setByte(index + length - 1, 0x7d);
-            bufs[1] = Unpooled.buffer(1, 1).writeByte(0x02);
+    private static final long ESCAPE = 0x7d7d7d7d7d7d7d7dL;
+    private static final long DELIMITER = 0x7e7e7e7e7e7e7e7eL;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+    /**
+     * 按8字节(SWAR)统计[index, end)中需要转义的字节数(0x7d、0x7e)，同时计算异或校验码
+     * @return 高32位为需要转义的字节数，低8位为校验码
+     */
+    private static long scan(ByteBuf buf, int index, int end) {
+        long x = 0L;
+        int escapes = 0;
+        for (; index + 8 <= end; index += 8) {
+            long word = buf.getLong(index);
+            x ^= word;
+            long matches = zeroBytes(word ^ ESCAPE) | zeroBytes(word ^ DELIMITER);
+            if (matches != 0L)
+                escapes += Long.bitCount(matches);
         }
-        return bufs;
+        x ^= x >>> 32;
+        x ^= x >>> 16;
+        x ^= x >>> 8;
+        int checksum = (int) x & 0xFF;
+        for (; index < end; index++) {
+            byte b = buf.getByte(index);
+            if (b == 0x7d || b == 0x7e)
+                escapes++;
+            checksum ^= b & 0xFF;
+        }
+        return ((long) escapes << 32) | checksum;
+    }
+
+    /** 值为0的字节对应位置的最高位置1，其余为0 */
+    private static long zeroBytes(long t) {
+        return ~(((t & LOW_BITS) + LOW_BITS) | t | LOW_BITS);
     }
-}
\ No newline at end of file
+}
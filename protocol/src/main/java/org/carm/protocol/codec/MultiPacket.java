@@ -1,11 +1,14 @@
 package org.carm.protocol.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.Timeout;
 import org.carm.protocol.basics.JTMessage;
 import org.carm.protocol.commons.MessageId;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 
 /**
@@ -15,14 +18,22 @@ import java.util.List;
  */
 public class MultiPacket {
 
+    /** 分包数组每个元素的估算字节数(引用) */
+    private static final int SLOT_BYTES = 8;
+
     private final JTMessage firstPacket;
+    /** 创建顺序 */
+    private long sequence;
     private int serialNo = -1;
 
-    private int retryCount;
+    private volatile int retryCount;
     private final long creationTime;
-    private long lastAccessedTime;
+    private volatile long lastAccessedTime;
+    private Timeout timeout;
 
     private int count = 0;
+    /** 已缓存的字节数 */
+    private int bytes = 0;
     private final ByteBuf[] packets;
 
     public MultiPacket(JTMessage firstPacket) {
@@ -33,20 +44,42 @@ public class MultiPacket {
         this.packets = new ByteBuf[firstPacket.getPackageTotal()];
     }
 
-    public ByteBuf[] addAndGet(int packetNo, ByteBuf packetData) {
+    /**
+     * 缓存分包，重复或序号越界的分包直接释放
+     * @return 新增缓存的字节数
+     */
+    public int add(int packetNo, ByteBuf packetData) {
         lastAccessedTime = System.currentTimeMillis();
 
         packetNo = packetNo - 1;
-        if (packets[packetNo] == null) {
-            packets[packetNo] = packetData;
-            count++;
-        } else {
+        if (packetNo < 0 || packetNo >= packets.length || packets[packetNo] != null) {
             packetData.release();
+            return 0;
         }
+        int length = packetData.readableBytes();
+        packets[packetNo] = packetData;
+        bytes += length;
+        count++;
+        return length;
+    }
 
-        if (isComplete())
-            return packets;
-        return null;
+    /** 将全部分包按序号复制到一个连续的缓冲区，并释放分包 */
+    public ByteBuf merge(ByteBufAllocator alloc) {
+        ByteBuf result = alloc.buffer(bytes);
+        try {
+            for (ByteBuf packet : packets)
+                result.writeBytes(packet);
+        } catch (Exception e) {
+            result.release();
+            throw e;
+        } finally {
+            release();
+        }
+        return result;
+    }
+
+    public boolean matches(String clientId, int messageId, int packageTotal) {
+        return firstPacket.getMessageId() == messageId && packets.length == packageTotal && Objects.equals(clientId, firstPacket.getClientId());
     }
 
     public List<Integer> getNotArrived() {
@@ -63,9 +96,11 @@ public class MultiPacket {
     }
 
     public void release() {
-        for (ByteBuf packet : packets) {
-            if (packet != null)
-                packet.release();
+        for (int i = 0; i < packets.length; i++) {
+            if (packets[i] != null) {
+                packets[i].release();
+                packets[i] = null;
+            }
         }
     }
 
@@ -74,6 +109,16 @@ public class MultiPacket {
         this.lastAccessedTime = System.currentTimeMillis();
     }
 
+    void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    void cancelTimeout() {
+        Timeout timeout = this.timeout;
+        if (timeout != null)
+            timeout.cancel();
+    }
+
     public int getRetryCount() {
         return retryCount;
     }
@@ -86,6 +131,23 @@ public class MultiPacket {
         return creationTime;
     }
 
+    public int getBytes() {
+        return bytes;
+    }
+
+    /** 占用的内存(已缓存的字节数 + 按分包总数分配的数组)，计入缓存上限 */
+    public long getMemory() {
+        return bytes + (long) packets.length * SLOT_BYTES;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     public boolean isComplete() {
         return count == packets.length;
     }
@@ -111,6 +173,7 @@ public class MultiPacket {
         sb.append(", cid=").append(firstPacket.getClientId());
         sb.append(", total=").append(total);
         sb.append(", count=").append(count);
+        sb.append(", bytes=").append(bytes);
         sb.append(", retryCount=").append(retryCount);
         sb.append(", waitTime=").append((System.currentTimeMillis() - creationTime) / 1000);
         sb.append(", packets=");
@@ -1,27 +1,56 @@
 package org.carm.protocol.codec;
 
+import io.github.yezhihao.netmc.session.Session;
 import io.github.yezhihao.protostar.SchemaManager;
 import io.netty.buffer.ByteBuf;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.carm.protocol.basics.JTMessage;
 
+import java.util.ArrayList;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
  * 分包消息管理
+ * 分包按会话(无会话时按终端号)缓存，全部到达后复制到一个连续的缓冲区再解码消息体
+ * 缓存的总字节数(含按分包总数分配的数组)超过上限时，按全局创建顺序丢弃最早的分包消息
+ * 每条分包消息在时间轮上注册一个超时任务，超时后按监听器的配置异步发送补传请求或丢弃
  * @author yezhihao
  * https://gitee.com/yezhihao/jt808-server
  */
 @Slf4j
 public class MultiPacketDecoder extends JTMessageDecoder {
 
-    private final Map<String, MultiPacket> multiPacketsMap;
+    /** 所有解码器共享的时间轮，超时任务不能阻塞 */
+    private static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("MultiPacketTimer", true), 100, TimeUnit.MILLISECONDS);
+
+    private final Map<Object, Packets> packetsMap = new ConcurrentHashMap<>();
+    /** 全部分包消息按创建顺序排列，用于超过缓存上限时丢弃最早的 */
+    private final ConcurrentSkipListMap<Long, Packets> ages = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder retriedCount = new LongAdder();
+    private final LongAdder abandonedCount = new LongAdder();
 
     private final MultiPacketListener multiPacketListener;
 
+    /** 全部会话缓存分包的最大字节数 */
+    private long maxBufferedBytes = 64 * 1024 * 1024;
+
+    /** 每个会话同时接收的最大分包消息数 */
+    private int maxPacketsPerSession = 4;
+
     public MultiPacketDecoder(String... basePackages) {
         this(new SchemaManager(basePackages));
     }
@@ -32,71 +61,205 @@ public class MultiPacketDecoder extends JTMessageDecoder {
 
     public MultiPacketDecoder(SchemaManager schemaManager, MultiPacketListener multiPacketListener) {
         super(schemaManager);
-        if (multiPacketListener == null) {
-            this.multiPacketsMap = new WeakHashMap<>();
-            this.multiPacketListener = null;
-        } else {
-            this.multiPacketsMap = new ConcurrentHashMap<>();
-            this.multiPacketListener = multiPacketListener;
-            startListener();
-        }
+        this.multiPacketListener = multiPacketListener == null ? new MultiPacketListener() : multiPacketListener;
+    }
+
+    public MultiPacketDecoder setMaxBufferedBytes(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        return this;
+    }
+
+    public MultiPacketDecoder setMaxPacketsPerSession(int maxPacketsPerSession) {
+        this.maxPacketsPerSession = maxPacketsPerSession;
+        return this;
+    }
+
+    /** 当前缓存的分包字节数 */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /** 正在接收的分包消息数 */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /** 已发送的补传请求数 */
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    /** 超时或超过缓存上限而丢弃的分包消息数 */
+    public long getAbandonedCount() {
+        return abandonedCount.sum();
     }
 
     @Override
-    protected ByteBuf[] addAndGet(JTMessage message, ByteBuf packetData) {
+    protected ByteBuf addAndGet(JTMessage message, ByteBuf packetData) {
         String clientId = message.getClientId();
         int messageId = message.getMessageId();
         int packageTotal = message.getPackageTotal();
         int packetNo = message.getPackageNo();
 
-        String key = new StringBuilder(21).append(clientId).append('/').append(messageId).append('/').append(packageTotal).toString();
-
-        MultiPacket multiPacket = multiPacketsMap.get(key);
-        if (multiPacket == null)
-            multiPacketsMap.put(key, multiPacket = new MultiPacket(message));
-        if (packetNo == 1)
-            multiPacket.setSerialNo(message.getSerialNo());
+        Session session = message.getSession();
+        Object owner = session != null ? session : clientId;
 
+        for (; ; ) {
+            Packets packets = packetsMap.computeIfAbsent(owner, Packets::new);
+            MultiPacket multiPacket;
+            long added;
+            synchronized (packets) {
+                if (packets.removed)
+                    continue;
 
-        ByteBuf[] packages = multiPacket.addAndGet(packetNo, packetData);
-        log.debug("<<<<<分包消息{}", multiPacket);
-        if (packages == null)
-            return null;
-        multiPacketsMap.remove(key);
-        return packages;
-    }
-
-    private void startListener() {
-        Thread thread = new Thread(() -> {
-            long timeout = multiPacketListener.timeout;
-            for (; ; ) {
-                long nextDelay = timeout;
-                long now = System.currentTimeMillis();
-
-                for (Map.Entry<String, MultiPacket> entry : multiPacketsMap.entrySet()) {
-                    MultiPacket packet = entry.getValue();
-
-                    long time = timeout - (now - packet.getLastAccessedTime());
-                    if (time <= 0) {
-                        if (!multiPacketListener.receiveTimeout(packet)) {
-                            log.warn("<<<<<分包接收超时{}", packet);
-                            multiPacketsMap.remove(entry.getKey());
-                            packet.release();
-                        }
-                    } else {
-                        nextDelay = Math.min(time, nextDelay);
+                multiPacket = packets.get(clientId, messageId, packageTotal);
+                if (multiPacket == null) {
+                    if (packets.size() >= maxPacketsPerSession) {
+                        MultiPacket oldest = packets.get(0);
+                        log.warn("<<<<<分包消息超过{}条,丢弃{}", maxPacketsPerSession, oldest);
+                        abandonedCount.increment();
+                        remove(packets, oldest);
+                        if (packets.removed)
+                            continue;
                     }
+                    packets.add(multiPacket = new MultiPacket(message));
+                    multiPacket.setSequence(sequence.incrementAndGet());
+                    ages.put(multiPacket.getSequence(), packets);
+                    pendingCount.incrementAndGet();
+                    bufferedBytes.addAndGet(multiPacket.getMemory());
+                    added = multiPacket.getMemory();
+                    schedule(packets, multiPacket, multiPacketListener.delay(0));
+                } else {
+                    added = 0;
                 }
-                try {
-                    Thread.sleep(nextDelay);
-                } catch (InterruptedException e) {
-                    log.error("MultiPacketListener", e);
+                if (packetNo == 1)
+                    multiPacket.setSerialNo(message.getSerialNo());
+
+                int length = multiPacket.add(packetNo, packetData);
+                bufferedBytes.addAndGet(length);
+                added += length;
+                log.debug("<<<<<分包消息{}", multiPacket);
+
+                if (multiPacket.isComplete()) {
+                    remove(packets, multiPacket);
+                    return multiPacket.merge(ALLOC);
                 }
             }
-        });
-        thread.setName("MultiPacketListener");
-        thread.setPriority(Thread.MIN_PRIORITY);
-        thread.setDaemon(true);
-        thread.start();
+            if (added > 0 && bufferedBytes.get() > maxBufferedBytes)
+                evict();
+            return null;
+        }
+    }
+
+    /** 调用方须持有packets的锁 */
+    private void remove(Packets packets, MultiPacket multiPacket) {
+        if (!packets.remove(multiPacket))
+            return;
+        multiPacket.cancelTimeout();
+        ages.remove(multiPacket.getSequence());
+        pendingCount.decrementAndGet();
+        bufferedBytes.addAndGet(-multiPacket.getMemory());
+        if (!multiPacket.isComplete())
+            multiPacket.release();
+        if (packets.isEmpty()) {
+            packets.removed = true;
+            packetsMap.remove(packets.owner, packets);
+        }
+    }
+
+    /** 按创建顺序丢弃最早的分包消息，直到缓存的字节数低于上限 */
+    private void evict() {
+        while (bufferedBytes.get() > maxBufferedBytes) {
+            Map.Entry<Long, Packets> entry = ages.firstEntry();
+            if (entry == null)
+                return;
+            long sequence = entry.getKey();
+            Packets packets = entry.getValue();
+            synchronized (packets) {
+                MultiPacket oldest = packets.get(sequence);
+                if (oldest == null) {
+                    //已完成或已超时
+                    ages.remove(sequence, packets);
+                    continue;
+                }
+                log.warn("<<<<<分包缓存超过{}字节,丢弃{}", maxBufferedBytes, oldest);
+                abandonedCount.increment();
+                remove(packets, oldest);
+            }
+        }
+    }
+
+    /** 调用方须持有packets的锁 */
+    private void schedule(Packets packets, MultiPacket multiPacket, long delay) {
+        multiPacket.setTimeout(TIMER.newTimeout(t -> timeout(packets, multiPacket), delay, TimeUnit.MILLISECONDS));
+    }
+
+    private void timeout(Packets packets, MultiPacket packet) {
+        int retryCount = packet.getRetryCount();
+        long delay = multiPacketListener.delay(retryCount) - (System.currentTimeMillis() - packet.getLastAccessedTime());
+        synchronized (packets) {
+            if (!packets.contains(packet))
+                return;
+            //等待期间收到了新的分包，顺延
+            if (delay > 0) {
+                schedule(packets, packet, delay);
+                return;
+            }
+        }
+
+        if (retryCount < multiPacketListener.getMaxRetries() && receiveTimeout(packet)) {
+            packet.addRetryCount(1);
+            retriedCount.increment();
+            synchronized (packets) {
+                if (packets.contains(packet))
+                    schedule(packets, packet, multiPacketListener.delay(retryCount + 1));
+            }
+        } else {
+            log.warn("<<<<<分包接收超时{}", packet);
+            abandonedCount.increment();
+            synchronized (packets) {
+                remove(packets, packet);
+            }
+        }
+    }
+
+    private boolean receiveTimeout(MultiPacket packet) {
+        try {
+            return multiPacketListener.receiveTimeout(packet);
+        } catch (Exception e) {
+            log.warn("<<<<<分包补传请求失败" + packet, e);
+            return false;
+        }
+    }
+
+    /** 一个会话正在接收的分包消息，按创建时间排序 */
+    private static class Packets extends ArrayList<MultiPacket> {
+
+        private final Object owner;
+        /** 已从packetsMap移除，需重新获取 */
+        private boolean removed;
+
+        private Packets(Object owner) {
+            super(2);
+            this.owner = owner;
+        }
+
+        private MultiPacket get(long sequence) {
+            for (int i = 0, size = size(); i < size; i++) {
+                MultiPacket packet = get(i);
+                if (packet.getSequence() == sequence)
+                    return packet;
+            }
+            return null;
+        }
+
+        private MultiPacket get(String clientId, int messageId, int packageTotal) {
+            for (int i = 0, size = size(); i < size; i++) {
+                MultiPacket packet = get(i);
+                if (packet.matches(clientId, messageId, packageTotal))
+                    return packet;
+            }
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,12 @@ public class MultiPacketListener {
 
     protected long timeout;
 
+    /** 最大补传次数 */
+    protected int maxRetries;
+
+    /** 每次补传后超时时间的倍数 */
+    protected double backoff;
+
     public MultiPacketListener() {
         this(30);
     }
@@ -18,15 +24,40 @@ public class MultiPacketListener {
      * @param timeout
      */
     public MultiPacketListener(int timeout) {
-        this.timeout = timeout * 1000;
+        this(timeout, 0, 1);
+    }
+
+    /**
+     * @param timeout    超时时间 (秒)
+     * @param maxRetries 最大补传次数
+     * @param backoff    每次补传后超时时间的倍数
+     */
+    public MultiPacketListener(int timeout, int maxRetries, double backoff) {
+        this.timeout = timeout * 1000L;
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+    }
+
+    /**
+     * 第retryCount次补传后的超时时间 (毫秒)
+     */
+    public long delay(int retryCount) {
+        if (retryCount == 0 || backoff == 1)
+            return timeout;
+        return (long) (timeout * Math.pow(backoff, retryCount));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
     }
 
     /**
-     * 超时分包消息处理
+     * 超时分包消息处理，在定时器线程中执行，不能阻塞(补传请求须异步发送)
+     * 补传次数达到maxRetries后不再调用，直接丢弃
      * @param multiPacket 分包信息
      * @return 是否继续等待
      */
     public boolean receiveTimeout(MultiPacket multiPacket) {
         return false;
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,29 @@
 package org.carm.protocol.t808;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.github.yezhihao.netmc.core.model.Recyclable;
+import io.github.yezhihao.protostar.Schema;
 import io.github.yezhihao.protostar.annotation.Field;
 import io.github.yezhihao.protostar.annotation.Message;
+import io.netty.buffer.Unpooled;
+import io.netty.util.Recycler;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.carm.protocol.commons.Bit;
 import org.carm.protocol.commons.transform.AttributeConverter;
 import org.carm.protocol.commons.transform.AttributeConverterYue;
+import org.carm.protocol.commons.transform.AttributeKey;
 import org.carm.protocol.basics.JTMessage;
 import org.carm.protocol.commons.JT808;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * @author yezhihao
@@ -22,7 +33,7 @@ import java.util.Map;
 @Data
 @Accessors(chain = true)
 @Message(JT808.位置信息汇报)
-public class T0200 extends JTMessage {
+public class T0200 extends JTMessage implements Recyclable {
 
     /**
      * 使用 Bit.isTrue判断报警和状态标志位
@@ -48,26 +59,292 @@ public class T0200 extends JTMessage {
     @Field(converter = AttributeConverterYue.class, desc = "位置附加信息(粤标)", version = 1)
     private Map<Integer, Object> attributes;
 
-    public int getAttributeInt(int key) {
-        if (attributes != null) {
-            Integer value = (Integer) attributes.get(key);
-            if (value != null) {
-                return value;
+    /** 设备时间(GMT+8)的秒级时间戳，0表示未知 */
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient long deviceTimeSeconds;
+    /** 未解析的位置附加信息(TLV) */
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient byte[] attributeBytes;
+    /** 附加信息索引，每项为 ID(8位)|长度(8位)|偏移量(16位) */
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient int[] attributeIndex;
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Schema<Map> attributeSchema;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Recycler.Handle<T0200> handle;
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile int refCnt;
+
+    private static final ZoneOffset GMT8 = ZoneOffset.ofHours(8);
+
+    /** 附加信息转换器中的有符号数值(WORD_SHORT、DWORD_INT)，其余数值类型为无符号数 */
+    private static final boolean[] SIGNED = new boolean[256];
+
+    static {
+        int[] keys = {AttributeKey.CarriageTemperature, AttributeKey.VideoRelatedAlarm, AttributeKey.VideoMissingStatus, AttributeKey.VideoObscuredStatus,
+                AttributeKey.Signal, AttributeKey.AnalogQuantity, AttributeKey.InstallErrorMsg, AttributeKey.AlgorithmErrorMsg};
+        for (int key : keys)
+            SIGNED[key] = true;
+    }
+
+    private static final AtomicIntegerFieldUpdater<T0200> REF_CNT = AtomicIntegerFieldUpdater.newUpdater(T0200.class, "refCnt");
+
+    private static final Recycler<T0200> RECYCLER = new Recycler<T0200>() {
+        @Override
+        protected T0200 newObject(Handle<T0200> handle) {
+            T0200 message = new T0200();
+            message.handle = handle;
+            return message;
+        }
+    };
+
+    /**
+     * 从对象池获取，引用计数为1，引用计数归零时回收
+     * @see Recyclable
+     */
+    public static T0200 newInstance() {
+        T0200 message = RECYCLER.get();
+        message.refCnt = 1;
+        return message;
+    }
+
+    /** 非对象池创建的消息不计数 */
+    @Override
+    public T0200 retain() {
+        if (handle != null) {
+            int cnt;
+            do {
+                cnt = refCnt;
+                if (cnt <= 0)
+                    throw new IllegalStateException("消息已回收");
+            } while (!REF_CNT.compareAndSet(this, cnt, cnt + 1));
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        if (handle == null)
+            return false;
+        int cnt = REF_CNT.decrementAndGet(this);
+        if (cnt > 0)
+            return false;
+        if (cnt < 0)
+            throw new IllegalStateException("消息已回收");
+        reset();
+        handle.recycle(this);
+        return true;
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        this.warnBit = 0;
+        this.statusBit = 0;
+        this.latitude = 0;
+        this.longitude = 0;
+        this.altitude = 0;
+        this.speed = 0;
+        this.direction = 0;
+        this.deviceTime = null;
+        this.deviceTimeSeconds = 0;
+        this.attributes = null;
+        this.attributeBytes = null;
+        this.attributeIndex = null;
+        this.attributeSchema = null;
+    }
+
+    /**
+     * 非对象池的副本，消息回收后仍可持有并跨线程读取(如设备的最新位置、报警的位置)
+     * 未解析的附加信息共享只读的字节数组和索引，不触发解析；非对象池创建的消息直接返回自身
+     */
+    public T0200 copy() {
+        if (handle == null)
+            return this;
+        T0200 copy = new T0200();
+        copy.messageId = messageId;
+        copy.properties = properties;
+        copy.protocolVersion = protocolVersion;
+        copy.clientId = clientId;
+        copy.serialNo = serialNo;
+        copy.packageTotal = packageTotal;
+        copy.packageNo = packageNo;
+        copy.verified = verified;
+        copy.vehicleId = vehicleId;
+        copy.driverId = driverId;
+        copy.warnBit = warnBit;
+        copy.statusBit = statusBit;
+        copy.latitude = latitude;
+        copy.longitude = longitude;
+        copy.altitude = altitude;
+        copy.speed = speed;
+        copy.direction = direction;
+        copy.deviceTime = deviceTime;
+        copy.deviceTimeSeconds = deviceTimeSeconds;
+        synchronized (this) {
+            copy.attributes = attributes;
+            copy.attributeBytes = attributeBytes;
+            copy.attributeIndex = attributeIndex;
+            copy.attributeSchema = attributeSchema;
+        }
+        return copy;
+    }
+
+    public LocalDateTime getDeviceTime() {
+        if (deviceTime == null && deviceTimeSeconds != 0)
+            deviceTime = LocalDateTime.ofEpochSecond(deviceTimeSeconds, 0, GMT8);
+        return deviceTime;
+    }
+
+    public T0200 setDeviceTime(LocalDateTime deviceTime) {
+        this.deviceTime = deviceTime;
+        this.deviceTimeSeconds = 0;
+        return this;
+    }
+
+    /** 设备时间(GMT+8)的秒级时间戳，无时间时返回0 */
+    @JsonIgnore
+    public long getDeviceTimeSeconds() {
+        if (deviceTimeSeconds == 0 && deviceTime != null)
+            deviceTimeSeconds = deviceTime.toEpochSecond(GMT8);
+        return deviceTimeSeconds;
+    }
+
+    /** 以秒级时间戳设置设备时间，LocalDateTime在首次调用getDeviceTime()时创建 */
+    public T0200 setDeviceTimeSeconds(long deviceTimeSeconds) {
+        this.deviceTimeSeconds = deviceTimeSeconds;
+        this.deviceTime = null;
+        return this;
+    }
+
+    /**
+     * 设置未解析的位置附加信息，首次调用getAttributes()时由schema解析
+     * @param bytes 附加信息区域(TLV)，由调用方转移所有权
+     */
+    public T0200 setAttributeBytes(Schema<Map> schema, byte[] bytes) {
+        int count = 0;
+        for (int i = 0; i + 2 <= bytes.length; ) {
+            int next = i + 2 + (bytes[i + 1] & 0xFF);
+            if (next > bytes.length)
+                break;
+            count++;
+            i = next;
+        }
+        int[] index = new int[count];
+        for (int i = 0, j = 0; j < count; j++) {
+            int length = bytes[i + 1] & 0xFF;
+            index[j] = (bytes[i] & 0xFF) << 24 | length << 16 | (i + 2);
+            i += 2 + length;
+        }
+        this.attributes = null;
+        this.attributeSchema = schema;
+        this.attributeIndex = index;
+        this.attributeBytes = bytes;
+        return this;
+    }
+
+    /** 未解析的位置附加信息，已解析时返回null */
+    @JsonIgnore
+    public byte[] getAttributeBytes() {
+        return attributeBytes;
+    }
+
+    public Map<Integer, Object> getAttributes() {
+        if (attributeBytes != null) {
+            synchronized (this) {
+                byte[] bytes = attributeBytes;
+                if (bytes != null) {
+                    attributes = attributeSchema.readFrom(Unpooled.wrappedBuffer(bytes));
+                    attributeBytes = null;
+                    attributeIndex = null;
+                    attributeSchema = null;
+                }
             }
         }
-        return 0;
+        return attributes;
     }
 
+    public T0200 setAttributes(Map<Integer, Object> attributes) {
+        this.attributes = attributes;
+        this.attributeBytes = null;
+        this.attributeIndex = null;
+        this.attributeSchema = null;
+        return this;
+    }
+
+    public boolean hasAttribute(int key) {
+        int[] index = attributeIndex;
+        if (index != null && attributeBytes != null)
+            return find(index, key) >= 0;
+        Map<Integer, Object> attributes = getAttributes();
+        return attributes != null && attributes.containsKey(key);
+    }
+
+    /** 与附加信息转换器的数值类型一致(有符号数按长度做符号扩展)，未解析时不创建对象 */
+    public int getAttributeInt(int key) {
+        return (int) getAttributeLong(key);
+    }
+
+    /** 与附加信息转换器的数值类型一致(有符号数按长度做符号扩展)，未解析时不创建对象 */
     public long getAttributeLong(int key) {
+        int[] index = attributeIndex;
+        byte[] bytes = attributeBytes;
+        if (index != null && bytes != null) {
+            int i = find(index, key);
+            if (i < 0)
+                return 0L;
+            return read(bytes, index[i], key < SIGNED.length && SIGNED[key]);
+        }
+        Map<Integer, Object> attributes = getAttributes();
         if (attributes != null) {
-            Long value = (Long) attributes.get(key);
-            if (value != null) {
-                return value;
-            }
+            Object value = attributes.get(key);
+            if (value instanceof Number)
+                return ((Number) value).longValue();
         }
         return 0L;
     }
 
+    private static int find(int[] index, int key) {
+        for (int i = 0; i < index.length; i++) {
+            if (index[i] >>> 24 == key)
+                return i;
+        }
+        return -1;
+    }
+
+    /** 按大端读取，超过8字节时只取前8字节 */
+    private static long read(byte[] bytes, int entry, boolean signed) {
+        int length = Math.min((entry >>> 16) & 0xFF, 8);
+        int offset = entry & 0xFFFF;
+        long value = 0L;
+        for (int i = 0; i < length; i++)
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        if (signed && length > 0) {
+            int shift = 64 - length * 8;
+            value = value << shift >> shift;
+        }
+        return value;
+    }
+
     public double getLng() {
         return longitude / 1000000d;
     }
@@ -0,0 +1,200 @@
+package org.carm.protocol;
+
+import io.github.yezhihao.protostar.SchemaManager;
+import io.github.yezhihao.protostar.schema.RuntimeSchema;
+import io.github.yezhihao.protostar.util.Explain;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.codec.BodyCodec;
+import org.carm.protocol.codec.BodyCodecs;
+import org.carm.protocol.codec.JTMessageDecoder;
+import org.carm.protocol.codec.JTMessageEncoder;
+import org.carm.protocol.commons.JT808;
+import org.carm.protocol.commons.transform.AttributeKey;
+import org.carm.protocol.t808.T0200;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.carm.protocol.BeanTest.gson;
+import static org.carm.protocol.JT808Beans.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 非反射编解码器与RuntimeSchema一致性测试(传入Explain时走RuntimeSchema)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class BodyCodecTest {
+
+    private static final JTMessageEncoder encoder = new JTMessageEncoder("org.carm.protocol");
+    private static final JTMessageDecoder decoder = new JTMessageDecoder("org.carm.protocol");
+    private static final JTMessageDecoder lazyDecoder = new JTMessageDecoder("org.carm.protocol").setLazyAttributes(true);
+
+    private static final int[] MESSAGE_IDS = {JT808.终端通用应答, JT808.平台通用应答, JT808.位置信息汇报};
+
+    @Test
+    public void testEnabled() {
+        BodyCodecs bodyCodecs = new BodyCodecs(new SchemaManager("org.carm.protocol"));
+        for (int version = 0; version <= 1; version++)
+            for (int messageId : MESSAGE_IDS)
+                assertNotNull(bodyCodecs.get(messageId, version));
+    }
+
+    /**
+     * 样本报文经RuntimeSchema解码后由编解码器编码、经编解码器解码后由RuntimeSchema编码，结果均须与样本一致
+     * 字段注解变更而编解码器未同步修改时构建失败
+     */
+    @Test
+    public void testConforms() {
+        SchemaManager schemaManager = new SchemaManager("org.carm.protocol");
+        for (int version = 0; version <= 1; version++) {
+            for (int messageId : MESSAGE_IDS) {
+                String name = Integer.toHexString(messageId) + " version " + version;
+                BodyCodec<JTMessage> codec = (BodyCodec) BodyCodecs.codec(messageId, version);
+                RuntimeSchema<JTMessage> schema = schemaManager.getRuntimeSchema(messageId, version);
+                byte[] sample = sample(messageId);
+
+                JTMessage expected = schema.newInstance();
+                schema.mergeFrom(Unpooled.wrappedBuffer(sample), expected);
+                ByteBuf output = Unpooled.buffer(sample.length);
+                codec.writeTo(output, expected);
+                assertEquals(ByteBufUtil.hexDump(sample), hex(output), "encode " + name);
+
+                JTMessage actual = codec.newInstance();
+                codec.mergeFrom(Unpooled.wrappedBuffer(sample), actual);
+                output = Unpooled.buffer(sample.length);
+                schema.writeTo(output, actual);
+                assertEquals(ByteBufUtil.hexDump(sample), hex(output), "decode " + name);
+            }
+        }
+    }
+
+    /** 各字段取值不同的样本消息体，字段顺序或长度变化时编码结果不一致 */
+    private static byte[] sample(int messageId) {
+        if (messageId == JT808.位置信息汇报)
+            return new byte[]{
+                    0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02,//报警标志、状态
+                    0x01, 0x23, 0x45, 0x67, 0x06, 0x54, 0x32, 0x10,//纬度、经度
+                    0x00, 0x10, 0x00, 0x20, 0x00, 0x30,//高程、速度、方向
+                    0x24, 0x01, 0x02, 0x03, 0x04, 0x05,//时间
+                    0x01, 0x04, 0x00, 0x00, 0x00, 0x64//里程
+            };
+        return new byte[]{0x12, 0x34, 0x56, 0x78, 0x03};
+    }
+
+    @Test
+    public void testT0001() {
+        check(H2013(T0001()));
+        check(H2019(T0001()));
+    }
+
+    @Test
+    public void testT0200() {
+        check(H2013(T0200()));
+        check(H2019(T0200()));
+        check(H2013(T0200Attributes()));
+        check(H2019(T0200Attributes()));
+        check(H2013(T0200JSATL12()));
+        check(H2019(T0200JSATL12()));
+
+        T0200 invalidTime = T0200();
+        invalidTime.setDeviceTime(null);
+        check(H2013(invalidTime));
+    }
+
+    @Test
+    public void testT0200Lazy() {
+        lazy(H2013(T0200()));
+        lazy(H2019(T0200Attributes()));
+        lazy(H2013(T0200JSATL12()));
+    }
+
+    /** 有符号数值按长度符号扩展、超出int范围的数值按long读取，延迟解析与直接解析结果一致 */
+    @Test
+    public void testT0200LazySigned() {
+        T0200 message = T0200();
+        Map<Integer, Object> attributes = new TreeMap<>();
+        attributes.put(AttributeKey.Mileage, 0xFFFFFFFFL);
+        attributes.put(AttributeKey.Fuel, 0xFFFF);
+        attributes.put(AttributeKey.CarriageTemperature, (short) -1);
+        attributes.put(AttributeKey.Signal, -1);
+        message.setAttributes(attributes);
+        String hex = hex(encoder.encode(H2019(message)));
+        T0200 expected = (T0200) decoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(hex)));
+        T0200 actual = (T0200) lazyDecoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(hex)));
+
+        assertEquals(-1, expected.getAttributeInt(AttributeKey.CarriageTemperature));
+        assertEquals(-1, actual.getAttributeInt(AttributeKey.CarriageTemperature));
+        assertEquals(0xFFFFFFFFL, expected.getAttributeLong(AttributeKey.Mileage));
+        assertEquals(0xFFFFFFFFL, actual.getAttributeLong(AttributeKey.Mileage));
+        for (int key : attributes.keySet()) {
+            assertEquals(expected.getAttributeInt(key), actual.getAttributeInt(key));
+            assertEquals(expected.getAttributeLong(key), actual.getAttributeLong(key));
+        }
+    }
+
+    /** 对象池中的消息回收后，副本仍保留原有的值 */
+    @Test
+    public void testRecycledCopy() {
+        JTMessageDecoder recyclable = new JTMessageDecoder("org.carm.protocol").setLazyAttributes(true).setRecyclable(true);
+        String hex = hex(encoder.encode(H2013(T0200Attributes())));
+        T0200 message = (T0200) recyclable.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(hex)));
+        T0200 copy = message.copy();
+        assertNotSame(message, copy);
+        long mileage = message.getAttributeLong(AttributeKey.Mileage);
+        long deviceTime = message.getDeviceTimeSeconds();
+
+        assertTrue(message.release());
+        assertEquals(mileage, copy.getAttributeLong(AttributeKey.Mileage));
+        assertEquals(deviceTime, copy.getDeviceTimeSeconds());
+        assertNotNull(copy.getAttributeBytes());
+        assertSame(copy, copy.copy());
+        assertFalse(copy.release());
+    }
+
+    private static void lazy(T0200 message) {
+        String hex = hex(encoder.encode(message));
+        T0200 expected = (T0200) decoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(hex)));
+        T0200 actual = (T0200) lazyDecoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(hex)));
+
+        assertEquals(expected.getDeviceTime().toEpochSecond(ZoneOffset.ofHours(8)), actual.getDeviceTimeSeconds());
+        int[] keys = {AttributeKey.Fuel, AttributeKey.Speed, AttributeKey.CarriageTemperature, AttributeKey.Signal, AttributeKey.IoState, AttributeKey.SignalStrength, AttributeKey.GnssCount};
+        for (int key : keys) {
+            assertEquals(expected.hasAttribute(key), actual.hasAttribute(key));
+            assertEquals(expected.getAttributeInt(key), actual.getAttributeInt(key));
+            assertEquals(expected.getAttributeLong(key), actual.getAttributeLong(key));
+        }
+        assertEquals(expected.getAttributeLong(AttributeKey.Mileage), actual.getAttributeLong(AttributeKey.Mileage));
+        assertEquals(expected.getAttributes() != null, actual.getAttributeBytes() != null, "attributes should stay unparsed");
+        //未解析的附加信息原样编码
+        assertEquals(hex, hex(encoder.encode(actual)));
+
+        assertEquals(gson.toJson(expected.getAttributes()), gson.toJson(actual.getAttributes()));
+        assertEquals(expected.getDeviceTime(), actual.getDeviceTime());
+        assertNull(actual.getAttributeBytes());
+    }
+
+    private static void check(JTMessage message) {
+        String expected = hex(encoder.encode(message, new Explain()));
+        String actual = hex(encoder.encode(message));
+        assertEquals(expected, actual, "encode not equals");
+
+        JTMessage expectedBean = decoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(expected)), new Explain());
+        JTMessage actualBean = decoder.decode(Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(expected)));
+        assertEquals(expectedBean.getClass(), actualBean.getClass());
+        assertEquals(gson.toJson(expectedBean), gson.toJson(actualBean), "decode not equals");
+    }
+
+    private static String hex(ByteBuf buf) {
+        try {
+            return ByteBufUtil.hexDump(buf);
+        } finally {
+            buf.release();
+        }
+    }
+}
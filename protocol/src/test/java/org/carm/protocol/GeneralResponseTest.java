@@ -0,0 +1,99 @@
+package org.carm.protocol;
+
+import io.github.yezhihao.netmc.session.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.codec.GeneralResponse;
+import org.carm.protocol.codec.JTMessageEncoder;
+import org.carm.protocol.commons.JT808;
+import org.carm.protocol.t808.T0001;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.carm.protocol.JT808Beans.H2013;
+import static org.carm.protocol.JT808Beans.H2019;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 通用应答模板与常规编码结果一致性测试
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class GeneralResponseTest {
+
+    private static final JTMessageEncoder encoder = new JTMessageEncoder("org.carm.protocol");
+
+    @Test
+    public void testResponse() {
+        check(H2013(new JTMessage()));
+        check(H2019(new JTMessage()));
+    }
+
+    @Test
+    public void testHeartbeat() {
+        heartbeat(H2013(new JTMessage()));
+        heartbeat(H2019(new JTMessage()));
+    }
+
+    private static void check(JTMessage request) {
+        request.setMessageId(JT808.位置信息汇报);
+        GeneralResponse template = new GeneralResponse();
+        //首次常规编码并生成模板
+        assertEquals(expected(request, 1, T0001.Success), encode(template.response(request, 1, T0001.Success)));
+
+        //流水号、应答字段包含需要转义的字节
+        int[][] cases = {{2, 3, T0001.Success}, {0x7e7d, 0x7d7e, T0001.Failure}, {0xFFFF, 0, T0001.NotSupport}};
+        for (int[] c : cases) {
+            request.setSerialNo(c[1]);
+            assertEquals(expected(request, c[0], c[2]), encode(template.response(request, c[0], c[2])));
+        }
+    }
+
+    private static void heartbeat(JTMessage request) {
+        Session session = new Session(null, new EmbeddedChannel(), new InetSocketAddress(0), s -> true, false);
+        GeneralResponse template = new GeneralResponse();
+
+        request.setMessageId(JT808.终端心跳);
+        request.setSerialNo(0x1234);
+        ByteBuf frame = encoder.encode(request);
+        assertNull(template.heartbeat(frame, session), "模板未生成时应走常规流程");
+
+        encode(template.response(request, session.nextSerialNo(), T0001.Success));
+        ByteBuf response = template.heartbeat(frame, session);
+        assertNotNull(response);
+        assertEquals(expected(request, 1, T0001.Success), ByteBufUtil.hexDump(response));
+        response.release();
+
+        //TCP分隔后的报文不含起始标识位
+        response = template.heartbeat(frame.slice(1, frame.readableBytes() - 1), session);
+        assertEquals(expected(request, 2, T0001.Success), ByteBufUtil.hexDump(response));
+        response.release();
+
+        request.setClientId(request.getClientId().replace('1', '2'));
+        ByteBuf other = encoder.encode(request);
+        assertNull(template.heartbeat(other, session), "终端手机号不一致时应走常规流程");
+        other.release();
+        frame.release();
+    }
+
+    private static String expected(JTMessage request, int serialNo, int resultCode) {
+        T0001 response = new T0001();
+        response.copyBy(request);
+        response.setMessageId(JT808.平台通用应答);
+        response.setSerialNo(serialNo);
+        response.setResponseSerialNo(request.getSerialNo());
+        response.setResponseMessageId(request.getMessageId());
+        response.setResultCode(resultCode);
+        return encode(response);
+    }
+
+    private static String encode(JTMessage message) {
+        ByteBuf buf = encoder.encode(message);
+        String hex = ByteBufUtil.hexDump(buf);
+        buf.release();
+        return hex;
+    }
+}
@@ -0,0 +1,91 @@
+package org.yzh;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.carm.protocol.JT808Beans;
+import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.codec.JTMessageDecoder;
+import org.carm.protocol.codec.JTMessageEncoder;
+import org.carm.protocol.t808.T0200;
+
+/**
+ * 编解码性能测试，分别测量不含转义和含转义(0x7d、0x7e)的报文，输出每次调用的平均耗时(ns/op)
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class CodecBenchmark extends JT808Beans {
+
+    private static final int warmup = 5;
+    private static final int iterations = 10;
+    private static final int operations = 1_000_000;
+
+    private static final JTMessageEncoder encoder = new JTMessageEncoder("org.carm.protocol");
+    private static final JTMessageDecoder decoder = new JTMessageDecoder("org.carm.protocol");
+
+    private static Object blackhole;
+
+    public static void main(String[] args) {
+        T0200 plain = H2013(T0200());
+
+        T0200 escaped = H2013(T0200());
+        escaped.setWarnBit(0x7e7d7e7d);
+        escaped.setStatusBit(0x7d7e7d7e);
+
+        ByteBuf plainFrame = frame(plain);
+        ByteBuf escapedFrame = frame(escaped);
+        System.out.println("plain   " + ByteBufUtil.hexDump(plainFrame));
+        System.out.println("escaped " + ByteBufUtil.hexDump(escapedFrame));
+
+        for (int i = 0; i < warmup; i++) {
+            decode(plainFrame);
+            decode(escapedFrame);
+            encode(plain);
+            encode(escaped);
+        }
+
+        long plainTime = 0, escapedTime = 0, plainEncode = 0, escapedEncode = 0;
+        for (int i = 0; i < iterations; i++) {
+            plainTime += decode(plainFrame);
+            escapedTime += decode(escapedFrame);
+            plainEncode += encode(plain);
+            escapedEncode += encode(escaped);
+        }
+        System.out.printf("decode plain    %8.2f ns/op%n", (double) plainTime / iterations / operations);
+        System.out.printf("decode escaped  %8.2f ns/op%n", (double) escapedTime / iterations / operations);
+        System.out.printf("encode plain    %8.2f ns/op%n", (double) plainEncode / iterations / operations);
+        System.out.printf("encode escaped  %8.2f ns/op%n", (double) escapedEncode / iterations / operations);
+        System.out.println(blackhole);
+    }
+
+    private static ByteBuf frame(JTMessage message) {
+        ByteBuf buf = encoder.encode(message);
+        byte[] bytes = ByteBufUtil.getBytes(buf);
+        buf.release();
+        return Unpooled.wrappedBuffer(bytes);
+    }
+
+    private static long encode(JTMessage message) {
+        long start = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < operations; i++) {
+            ByteBuf buf = encoder.encode(message);
+            length += buf.readableBytes();
+            buf.release();
+        }
+        blackhole = length;
+        return System.nanoTime() - start;
+    }
+
+    private static long decode(ByteBuf frame) {
+        long start = System.nanoTime();
+        JTMessage message = null;
+        for (int i = 0; i < operations; i++) {
+            message = decoder.decode(frame.duplicate());
+            if (!message.isVerified())
+                throw new IllegalStateException("校验失败");
+        }
+        blackhole = message;
+        return System.nanoTime() - start;
+    }
+}
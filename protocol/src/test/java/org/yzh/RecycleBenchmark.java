@@ -0,0 +1,87 @@
+package org.yzh;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.carm.protocol.JT808Beans;
+import org.carm.protocol.codec.JTMessageDecoder;
+import org.carm.protocol.codec.JTMessageEncoder;
+import org.carm.protocol.commons.transform.AttributeKey;
+import org.carm.protocol.t808.T0200;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 位置信息汇报对象池GC压力测试
+ * 模拟批处理：解码的消息累积到batchSize条后统一释放，输出每条消息的分配字节数和GC次数、耗时
+ * 建议使用 -Xmx512m -Xlog:gc 运行
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class RecycleBenchmark extends JT808Beans {
+
+    private static final int batchSize = 4000;
+    private static final int batches = 5000;
+
+    private static final JTMessageEncoder encoder = new JTMessageEncoder("org.carm.protocol");
+
+    public static void main(String[] args) {
+        ByteBuf buf = encoder.encode(H2013(T0200Attributes()));
+        ByteBuf frame = Unpooled.wrappedBuffer(ByteBufUtil.getBytes(buf));
+        buf.release();
+
+        JTMessageDecoder eager = new JTMessageDecoder("org.carm.protocol");
+        JTMessageDecoder lazy = new JTMessageDecoder("org.carm.protocol").setLazyAttributes(true);
+        JTMessageDecoder recyclable = new JTMessageDecoder("org.carm.protocol").setLazyAttributes(true).setRecyclable(true);
+
+        run("eager     ", eager, frame);
+        run("lazy      ", lazy, frame);
+        run("recyclable", recyclable, frame);
+
+        run("eager     ", eager, frame);
+        run("lazy      ", lazy, frame);
+        run("recyclable", recyclable, frame);
+    }
+
+    private static void run(String name, JTMessageDecoder decoder, ByteBuf frame) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCount = gcCount(), gcTime = gcTime();
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        T0200[] batch = new T0200[batchSize];
+        long sum = 0;
+        for (int i = 0; i < batches; i++) {
+            for (int j = 0; j < batchSize; j++)
+                batch[j] = (T0200) decoder.decode(frame.duplicate());
+            for (int j = 0; j < batchSize; j++) {
+                T0200 message = batch[j];
+                sum += message.getDeviceTimeSeconds() + message.getAttributeLong(AttributeKey.Mileage);
+                message.release();
+                batch[j] = null;
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+        long operations = (long) batchSize * batches;
+        System.out.printf("%s %8.2f ns/op %8.1f B/op  gc:%d次 %dms  (%d)%n", name,
+                (double) time / operations, (double) bytes / operations, gcCount() - gcCount, gcTime() - gcTime, sum);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += gc.getCollectionCount();
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += gc.getCollectionTime();
+        return time;
+    }
+}
@@ -1,5 +1,6 @@
 package org.carm.web.config;
 
+import io.github.yezhihao.netmc.core.BusinessExecutor;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -25,11 +26,32 @@ public class JTProperties {
     private int udpPort;
     /** 心跳超时(秒) */
     private int idleTimeout;
+    /** 是否使用原生epoll传输(仅Linux，不可用时回退NIO) */
+    private boolean nativeTransport;
+    /** TCP/UDP绑定同一端口的socket数量(SO_REUSEPORT，仅epoll生效) */
+    private int acceptorCore = 1;
+    /** @Async业务处理是否使用虚拟线程(JDK21+) */
+    private boolean virtualThread;
+    /** @Async业务处理未完成任务上限，超出后在IO线程上执行(背压)，0不限制 */
+    private int businessCapacity;
+    /** @Async业务处理超出上限时的处理策略，CALLER_RUNS会在IO线程上执行阻塞的业务，不建议使用 */
+    private BusinessExecutor.RejectPolicy businessRejectPolicy = BusinessExecutor.RejectPolicy.PAUSE_READ;
+    /** 终端心跳在解码阶段直接应答(使用预编码的通用应答模板)，不推送SSE/Pulsar */
+    private boolean fastHeartbeat;
+    /** TCP入站使用合并处理器，在一次channelRead中完成拆包、解码和分发 */
+    private boolean fusedInbound;
+    /** 位置信息汇报使用对象池，批处理完成后回收 */
+    private boolean recyclable;
+    /** 位置信息汇报的附加信息保留为原始字节，在使用时才解析 */
+    private boolean lazyAttributes;
     /** 消息类包名 */
     private String messagePackage;
     private C0801 t0801;
     private C9208 t9208;
     private C9206 t9206;
+    private C8003 t8003 = new C8003();
+    private Retry retry = new Retry();
+    private Outbound outbound = new Outbound();
 
     @Data
     public static class C0801 {
@@ -61,6 +83,42 @@ public class JTProperties {
         private String password;
     }
 
+    @Data
+    public static class C8003 {
+        /** 分包接收超时时间(秒)，超时后发送T8003服务器补传分包请求 */
+        private int timeout = 10;
+        /** 最大补传次数 */
+        private int maxRetries = 5;
+        /** 每次补传后超时时间的倍数 */
+        private double backoff = 1;
+    }
+
+    @Data
+    public static class Retry {
+        /** TCP消息应答超时时间(秒)，对应终端参数0x0002 */
+        private int tcpTimeout = 5;
+        /** TCP消息重传次数，对应终端参数0x0003 */
+        private int tcpRetries = 1;
+        /** UDP消息应答超时时间(秒)，对应终端参数0x0004 */
+        private int udpTimeout = 5;
+        /** UDP消息重传次数，对应终端参数0x0005 */
+        private int udpRetries = 1;
+        /** 每个终端同时等待应答的最大下行请求数，0不限制 */
+        private int window = 16;
+    }
+
+    @Data
+    public static class Outbound {
+        /** 发送缓冲区低水位(字节)，低于该值时恢复可写 */
+        private int lowWaterMark = 32 * 1024;
+        /** 发送缓冲区高水位(字节)，超过该值时下行消息进入发送队列 */
+        private int highWaterMark = 64 * 1024;
+        /** 每个终端发送队列的最大消息数 */
+        private int maxQueued = 256;
+        /** 队列已满时丢弃最早的低优先级消息，否则拒绝新消息 */
+        private boolean dropOldest;
+    }
+
     public T9206 newT9206() {
         T9206 request = new T9206();
         request.setMessageId(JT1078.文件上传指令);
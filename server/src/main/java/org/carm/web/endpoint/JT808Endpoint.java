@@ -109,8 +109,10 @@ public class JT808Endpoint {
      * poolSize：参考数据库CPU核心数量
      * maxElements：最大累积4000条记录处理一次
      * maxWait：最大等待时间1秒
+     * highWaterMark/lowWaterMark：队列超过容量的80%时暂停相关连接读取，回落到40%以下恢复
+     * latencyBudget：单批入库耗时目标500毫秒，据此自动调整批量大小和等待时间
      */
-    @AsyncBatch(poolSize = 2, maxElements = 4000, maxWait = 1000)
+    @AsyncBatch(poolSize = 2, maxElements = 4000, maxWait = 1000, highWaterMark = 80, lowWaterMark = 40, latencyBudget = 500)
     @Mapping(types = 位置信息汇报, desc = "位置信息汇报")
     public void T0200(List<T0200> list) {
     }
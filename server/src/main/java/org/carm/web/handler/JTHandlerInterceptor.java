@@ -5,6 +5,7 @@ import io.github.yezhihao.netmc.session.Session;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.codec.GeneralResponse;
 import org.carm.protocol.commons.JT808;
 import org.carm.protocol.t808.T0001;
 import org.carm.protocol.t808.T0200;
@@ -12,6 +13,8 @@ import org.carm.web.model.entity.DeviceDO;
 import org.carm.web.model.enums.SessionKey;
 import org.carm.web.model.vo.T0200Ext;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @Slf4j
 @Component
 public class JTHandlerInterceptor implements HandlerInterceptor<JTMessage> {
@@ -19,14 +22,7 @@ public class JTHandlerInterceptor implements HandlerInterceptor<JTMessage> {
     /** 未找到对应的Handle */
     @Override
     public JTMessage notSupported(JTMessage request, Session session) {
-        T0001 response = new T0001();
-        response.copyBy(request);
-        response.setMessageId(JT808.平台通用应答);
-        response.setSerialNo(session.nextSerialNo());
-
-        response.setResponseSerialNo(request.getSerialNo());
-        response.setResponseMessageId(request.getMessageId());
-        response.setResultCode(T0001.NotSupport);
+        T0001 response = generalResponse(session).response(request, session.nextSerialNo(), T0001.NotSupport);
 
         log.info("{}\n<<<<-未识别的消息{}\n>>>>-{}", session, request, response);
         return response;
@@ -36,14 +32,7 @@ public class JTHandlerInterceptor implements HandlerInterceptor<JTMessage> {
     /** 调用之后，返回值为void的 */
     @Override
     public JTMessage successful(JTMessage request, Session session) {
-        T0001 response = new T0001();
-        response.copyBy(request);
-        response.setMessageId(JT808.平台通用应答);
-        response.setSerialNo(session.nextSerialNo());
-
-        response.setResponseSerialNo(request.getSerialNo());
-        response.setResponseMessageId(request.getMessageId());
-        response.setResultCode(T0001.Success);
+        T0001 response = generalResponse(session).response(request, session.nextSerialNo(), T0001.Success);
 
 //        log.info("{}\n<<<<-{}\n>>>>-{}", session, request, response);
         return response;
@@ -52,19 +41,24 @@ public class JTHandlerInterceptor implements HandlerInterceptor<JTMessage> {
     /** 调用之后抛出异常的 */
     @Override
     public JTMessage exceptional(JTMessage request, Session session, Throwable e) {
-        T0001 response = new T0001();
-        response.copyBy(request);
-        response.setMessageId(JT808.平台通用应答);
-        response.setSerialNo(session.nextSerialNo());
-
-        response.setResponseSerialNo(request.getSerialNo());
-        response.setResponseMessageId(request.getMessageId());
-        response.setResultCode(T0001.Failure);
+        T0001 response = generalResponse(session).response(request, session.nextSerialNo(), T0001.Failure);
 
-        log.warn(session + "\n<<<<-" + request + "\n>>>>-" + response + '\n', e);
+        //过载拒绝时由netmc计数并限频记录日志，不逐条输出消息内容
+        if (!(e instanceof RejectedExecutionException))
+            log.warn(session + "\n<<<<-" + request + "\n>>>>-" + response + '\n', e);
         return response;
     }
 
+    /** 会话的通用应答模板，首次应答后生成，之后的应答(含心跳)直接修改模板 */
+    public static GeneralResponse generalResponse(Session session) {
+        GeneralResponse template = session.getAttribute(SessionKey.GeneralResponse);
+        if (template == null) {
+            template = new GeneralResponse();
+            session.setAttribute(SessionKey.GeneralResponse, template);
+        }
+        return template;
+    }
+
     /** 调用之前 */
     @Override
     public boolean beforeHandle(JTMessage request, Session session) {
@@ -79,7 +73,7 @@ public class JTHandlerInterceptor implements HandlerInterceptor<JTMessage> {
         DeviceDO device = session.getAttribute(SessionKey.Device);
         if (messageId == JT808.位置信息汇报) {
             T0200 t0200 = (T0200) request;
-            if (t0200.getDeviceTime() == null) {
+            if (t0200.getDeviceTimeSeconds() == 0) {
                 return false;//忽略没有时间的消息
             }
             request.setExtData(new T0200Ext(t0200));
@@ -7,11 +7,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.carm.commons.spring.SSEService;
 import org.carm.commons.util.JsonUtils;
 import org.carm.protocol.basics.JTMessage;
+import org.carm.protocol.codec.GeneralResponse;
 import org.carm.protocol.codec.JTMessageAdapter;
 import org.carm.protocol.codec.JTMessageDecoder;
 import org.carm.protocol.codec.JTMessageEncoder;
 import org.carm.protocol.commons.JT808;
 import org.carm.protocol.commons.MessageId;
+import org.carm.protocol.t808.T0200;
+import org.carm.web.model.enums.SessionKey;
 import org.carm.web.service.PulsarService;
 
 import java.util.HashSet;
@@ -21,6 +24,8 @@ public class JTMessagePushAdapter extends JTMessageAdapter {
 
     private final SSEService sseService;
     private final PulsarService pulsarService;
+    /** 终端心跳在解码阶段直接应答，不经过业务处理，也不推送SSE/Pulsar */
+    private boolean fastHeartbeat;
     private static final HashSet<Integer> ignoreMsgs = new HashSet<>();
 
     static {
@@ -40,6 +45,18 @@ public class JTMessagePushAdapter extends JTMessageAdapter {
         this.pulsarService = pulsarService;
     }
 
+    public JTMessagePushAdapter setFastHeartbeat(boolean fastHeartbeat) {
+        this.fastHeartbeat = fastHeartbeat;
+        return this;
+    }
+
+    @Override
+    protected GeneralResponse generalResponse(Session session) {
+        if (!fastHeartbeat || session == null)
+            return null;
+        return session.getAttribute(SessionKey.GeneralResponse);
+    }
+
     @Override
     public void encodeLog(Session session, JTMessage message, ByteBuf output) {
         int messageId = message.getMessageId();
@@ -60,6 +77,18 @@ public class JTMessagePushAdapter extends JTMessageAdapter {
         if (message != null) {
             int messageId = message.getMessageId();
             String hex = ByteBufUtil.hexDump(input, 0, input.writerIndex());
+            //延迟解码的消息，无SSE订阅时不序列化消息体(Pulsar仅推送hex)，避免在IO线程上解析
+            if (isLazy(message) && !sseService.hasEvent(message.getClientId())) {
+                if (!ignoreMsgs.contains(messageId))
+                    log.info("{}\n<<<<<-{},hex:{}", session, MessageId.getName(messageId), hex);
+                if (!message.isVerified())
+                    log.error("<<<<<校验码错误session={},hex={}", session, hex);
+                if (pulsarService != null)
+                    pulsarService.publishUp(message, hex, session == null ? "" : session.toString());
+                return;
+            }
+            if (!message.isBodyDecoded())
+                message.decodeBody();
             String data = MessageId.getName(messageId) + JsonUtils.toJson(message) + ",hex:" + hex;
             sseService.send(message.getClientId(), data);
             if (!ignoreMsgs.contains(messageId))
@@ -75,6 +104,11 @@ public class JTMessagePushAdapter extends JTMessageAdapter {
         }
     }
 
+    /** 消息体未解码，或位置汇报的附加信息未解析(序列化时会调用getAttributes()、getDeviceTime()) */
+    private static boolean isLazy(JTMessage message) {
+        return !message.isBodyDecoded() || (message instanceof T0200 && ((T0200) message).getAttributeBytes() != null);
+    }
+
     public static void clearMessage() {
         synchronized (ignoreMsgs) {
             ignoreMsgs.clear();
@@ -1,6 +1,7 @@
 package org.carm.web.handler;
 
 import io.github.yezhihao.netmc.session.Session;
+import lombok.extern.slf4j.Slf4j;
 import org.carm.protocol.codec.MultiPacket;
 import org.carm.protocol.codec.MultiPacketListener;
 import org.carm.protocol.commons.JT808;
@@ -8,16 +9,26 @@ import org.carm.protocol.t808.T8003;
 
 import java.util.List;
 
+@Slf4j
 public class JTMultiPacketListener extends MultiPacketListener {
 
     public JTMultiPacketListener(int timeout) {
-        super(timeout);
+        this(timeout, 5, 1);
+    }
+
+    /**
+     * @param timeout    超时时间 (秒)
+     * @param maxRetries 最大补传次数
+     * @param backoff    每次补传后超时时间的倍数
+     */
+    public JTMultiPacketListener(int timeout, int maxRetries, double backoff) {
+        super(timeout, maxRetries, backoff);
     }
 
     @Override
     public boolean receiveTimeout(MultiPacket multiPacket) {
-        int retryCount = multiPacket.getRetryCount();
-        if (retryCount > 5)
+        Session session = multiPacket.getFirstPacket().getSession();
+        if (session == null || !session.channel().isActive())
             return false;
 
         T8003 request = new T8003();
@@ -30,12 +41,7 @@ public class JTMultiPacketListener extends MultiPacketListener {
             idList[i] = notArrived.get(i).shortValue();
         }
         request.setId(idList);
-        Session session = multiPacket.getFirstPacket().getSession();
-        if (session != null) {
-            session.notify(request).block();
-            multiPacket.addRetryCount(1);
-            return true;
-        }
-        return false;
+        session.notify(request).subscribe(null, e -> log.warn("补传分包请求发送失败{}", session, e));
+        return true;
     }
-}
\ No newline at end of file
+}
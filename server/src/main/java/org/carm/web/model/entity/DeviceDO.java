@@ -24,14 +24,13 @@ public class DeviceDO {
     @Schema(description = "协议版本号")
     private int protocolVersion;
     @Schema(description = "实时状态")
-    private T0200 location;
+    private volatile T0200 location;
 
+    /** 持有最新位置的非对象池副本，web层可直接读取 */
     public void updateLocation(T0200 location) {
-        if (this.location == null) {
-            this.location = location;
-        } else if (this.location.getDeviceTime().isBefore(location.getDeviceTime())) {
-            this.location = location;
-        }
+        T0200 prev = this.location;
+        if (prev == null || prev.getDeviceTimeSeconds() < location.getDeviceTimeSeconds())
+            this.location = location.copy();
     }
 
     @Override
@@ -6,5 +6,7 @@ package org.carm.web.model.enums;
  */
 public enum SessionKey {
 
-    Device
-}
\ No newline at end of file
+    Device,
+    /** 平台通用应答模板 */
+    GeneralResponse
+}
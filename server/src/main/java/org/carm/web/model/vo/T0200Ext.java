@@ -30,9 +30,24 @@ public class T0200Ext {
     }
 
 
+    private static final int[] ALARM_KEYS = {AlarmADAS.key, AlarmBSD.key, AlarmDSM.key, AlarmTPMS.key, InOutAreaAlarm.key, OverSpeedAlarm.key, RouteDriveTimeAlarm.key};
+
     private List<Alarm> getAlarms(T0200 t) {
+        //没有报警时不解析附加信息
+        boolean hasAlarm = false;
+        for (int key : ALARM_KEYS) {
+            if (t.hasAttribute(key)) {
+                hasAlarm = true;
+                break;
+            }
+        }
+        if (!hasAlarm)
+            return Collections.emptyList();
+
         Map<Integer, Object> attributes = t.getAttributes();
         if (attributes != null) {
+            //报警随后交给其他线程处理，持有位置的副本
+            T0200 location = t.copy();
             List<Alarm> alarmList = new ArrayList<>();
             Alarm alarm = (Alarm) attributes.get(AlarmADAS.key);
             if (alarm != null && alarm.getState() != 2) {
@@ -52,17 +67,17 @@ public class T0200Ext {
             }
             alarm = (Alarm) attributes.get(InOutAreaAlarm.key);
             if (alarm != null) {
-                alarm.setLocation(t);
+                alarm.setLocation(location);
                 alarmList.add(alarm);
             }
             alarm = (Alarm) attributes.get(OverSpeedAlarm.key);
             if (alarm != null) {
-                alarm.setLocation(t);
+                alarm.setLocation(location);
                 alarmList.add(alarm);
             }
             alarm = (Alarm) attributes.get(RouteDriveTimeAlarm.key);
             if (alarm != null) {
-                alarm.setLocation(t);
+                alarm.setLocation(location);
                 alarmList.add(alarm);
             }
             return alarmList;
@@ -10,6 +10,7 @@ import org.carm.protocol.basics.JTMessage;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author yezhihao
@@ -54,7 +55,8 @@ public class MessageService {
 
         return session.request(request, responseClass)
                 .map(message -> R.success(message))
-                .timeout(Duration.ofSeconds(10), TIMEOUT_RESULT)
+                //超时由会话按重传策略判定(重传全部超时后)
+                .onErrorResume(TimeoutException.class, e -> TIMEOUT_RESULT)
                 .onErrorResume(e -> {
                     log.warn("消息发送失败", e);
                     return SENDFAIL_RESULT;
@@ -68,7 +70,8 @@ public class MessageService {
 
         return session.request(request, responseClass)
                 .map(message -> R.success(message))
-                .timeout(Duration.ofSeconds(10), TIMEOUT_RESULT)
+                //超时由会话按重传策略判定(重传全部超时后)
+                .onErrorResume(TimeoutException.class, e -> TIMEOUT_RESULT)
                 .onErrorResume(e -> {
                     log.warn("消息发送失败", e);
                     return SENDFAIL_RESULT;
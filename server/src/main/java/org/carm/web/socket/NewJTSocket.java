@@ -5,10 +5,14 @@ import io.github.yezhihao.netmc.Server;
 import io.github.yezhihao.netmc.codec.Delimiter;
 import io.github.yezhihao.netmc.codec.LengthField;
 import io.github.yezhihao.netmc.core.HandlerMapping;
+import io.github.yezhihao.netmc.core.model.Message;
+import io.github.yezhihao.netmc.session.OutboundPolicy;
+import io.github.yezhihao.netmc.session.RetryPolicy;
 import io.github.yezhihao.netmc.session.SessionListener;
 import io.github.yezhihao.netmc.session.SessionManager;
 import io.github.yezhihao.protostar.SchemaManager;
 import org.carm.protocol.codec.*;
+import org.carm.protocol.commons.JT808;
 import org.carm.web.config.JTProperties;
 import org.carm.web.handler.JTHandlerInterceptor;
 import org.carm.web.handler.JTMultiPacketListener;
@@ -39,12 +43,20 @@ public class NewJTSocket {
                 .setPort(jtProperties.getTcpPort())
                 //标识位[2] + 消息头[21] + 消息体[1023 * 2(转义预留)]  + 校验码[1] + 标识位[2]
                 .setMaxFrameLength(2 + 21 + 1023 * 2 + 1 + 2)
-                .setDelimiters(new Delimiter(new byte[]{0x7e}, false))
+                //消息头[12] + 校验码[1]
+                .setDelimiters(Delimiter.flag((byte) 0x7e, false, 12 + 1))
                 .setDecoder(messageAdapter)
                 .setEncoder(messageAdapter)
                 .setHandlerMapping(handlerMapping)
                 .setHandlerInterceptor(handlerInterceptor)
                 .setSessionManager(sessionManager)
+                .setNativeTransport(jtProperties.isNativeTransport())
+                .setAcceptorCore(jtProperties.getAcceptorCore())
+                .setVirtualThread(jtProperties.isVirtualThread())
+                .setBusinessQueue(jtProperties.getBusinessCapacity(), jtProperties.getBusinessRejectPolicy())
+                .setOrderedAsync(true)
+                .setWriteBufferWaterMark(jtProperties.getOutbound().getLowWaterMark(), jtProperties.getOutbound().getHighWaterMark())
+                .setFusedInbound(jtProperties.isFusedInbound())
                 .setName("808-TCP")
                 .build();
     }
@@ -59,12 +71,19 @@ public class NewJTSocket {
         return NettyConfig.custom()
                 .setIdleStateTime(jtProperties.getIdleTimeout(), 0, 0)
                 .setPort(jtProperties.getUdpPort())
-                .setDelimiters(new Delimiter(new byte[]{0x7e}, false))
+                //消息头[12] + 校验码[1]
+                .setDelimiters(Delimiter.flag((byte) 0x7e, false, 12 + 1))
                 .setDecoder(messageAdapter)
                 .setEncoder(messageAdapter)
                 .setHandlerMapping(handlerMapping)
                 .setHandlerInterceptor(handlerInterceptor)
                 .setSessionManager(sessionManager)
+                .setNativeTransport(jtProperties.isNativeTransport())
+                .setAcceptorCore(jtProperties.getAcceptorCore())
+                .setVirtualThread(jtProperties.isVirtualThread())
+                .setBusinessQueue(jtProperties.getBusinessCapacity(), jtProperties.getBusinessRejectPolicy())
+                .setOrderedAsync(true)
+                .setWriteBufferWaterMark(jtProperties.getOutbound().getLowWaterMark(), jtProperties.getOutbound().getHighWaterMark())
                 .setName("808-UDP")
                 .setEnableUDP(true)
                 .build();
@@ -96,19 +115,45 @@ public class NewJTSocket {
     }
 
     @Bean
-    public JTMessageAdapter jtMessageAdapter(SchemaManager schemaManager, SSEService sseService, ObjectProvider<PulsarService> pulsarServiceProvider) {
+    public JTMessageAdapter jtMessageAdapter(SchemaManager schemaManager, SSEService sseService, ObjectProvider<PulsarService> pulsarServiceProvider, JTProperties jtProperties) {
         JTMessageEncoder messageEncoder = new JTMessageEncoder(schemaManager);
-        JTMessageDecoder messageDecoder = new MultiPacketDecoder(schemaManager, new JTMultiPacketListener(10));
+        JTProperties.C8003 t8003 = jtProperties.getT8003();
+        JTMessageDecoder messageDecoder = new MultiPacketDecoder(schemaManager, new JTMultiPacketListener(t8003.getTimeout(), t8003.getMaxRetries(), t8003.getBackoff()))
+                //业务中未使用消息体的消息，仅解码消息头
+                .setLazyBody(JT808.事件报告, JT808.信息点播_取消, JT808.CAN总线数据上传, JT808.多媒体事件信息上传, JT808.数据上行透传, JT808.数据压缩上报)
+                .setLazyAttributes(jtProperties.isLazyAttributes())
+                .setRecyclable(jtProperties.isRecyclable());
         PulsarService pulsarService = pulsarServiceProvider.getIfAvailable();
         if (pulsarService != null) {
-            return new JTMessagePushAdapter(messageEncoder, messageDecoder, sseService, pulsarService);
+            return new JTMessagePushAdapter(messageEncoder, messageDecoder, sseService, pulsarService).setFastHeartbeat(jtProperties.isFastHeartbeat());
         }
-        return new JTMessagePushAdapter(messageEncoder, messageDecoder, sseService);
+        return new JTMessagePushAdapter(messageEncoder, messageDecoder, sseService).setFastHeartbeat(jtProperties.isFastHeartbeat());
     }
 
     @Bean
-    public SessionManager sessionManager(SessionListener sessionListener) {
-        return new SessionManager(SessionKey.class, sessionListener);
+    public SessionManager sessionManager(SessionListener sessionListener, JTProperties jtProperties) {
+        JTProperties.Retry retry = jtProperties.getRetry();
+        JTProperties.Outbound outbound = jtProperties.getOutbound();
+        return new SessionManager(SessionKey.class, sessionListener).setRetryPolicy(
+                new RetryPolicy(retry.getTcpTimeout(), retry.getTcpRetries(), retry.getWindow()),
+                new RetryPolicy(retry.getUdpTimeout(), retry.getUdpRetries(), retry.getWindow())
+        ).setOutboundPolicy(new OutboundPolicy(outbound.getMaxQueued(),
+                outbound.isDropOldest() ? OutboundPolicy.Overflow.DROP_OLDEST : OutboundPolicy.Overflow.FAIL,
+                NewJTSocket::priority));
+    }
+
+    /** 通用应答优先发送，参数设置、升级包、透传等大消息最后发送 */
+    private static int priority(Message message) {
+        switch (message.getMessageId()) {
+            case JT808.平台通用应答:
+                return OutboundPolicy.ACK;
+            case JT808.设置终端参数:
+            case JT808.下发终端升级包:
+            case JT808.数据下行透传:
+                return OutboundPolicy.BULK;
+            default:
+                return OutboundPolicy.COMMAND;
+        }
     }
 
     @Bean
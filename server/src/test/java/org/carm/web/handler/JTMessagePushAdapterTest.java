@@ -0,0 +1,71 @@
+package org.carm.web.handler;
+
+import io.github.yezhihao.netmc.session.Session;
+import io.netty.buffer.ByteBuf;
+import org.carm.commons.spring.SSEService;
+import org.carm.protocol.codec.JTMessageDecoder;
+import org.carm.protocol.codec.JTMessageEncoder;
+import org.carm.protocol.commons.JT808;
+import org.carm.protocol.commons.transform.AttributeKey;
+import org.carm.protocol.t808.T0200;
+import org.carm.web.model.entity.DeviceDO;
+import org.carm.web.model.enums.SessionKey;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 位置信息汇报在解码、日志推送、业务拦截的过程中不解析附加信息
+ * @author yezhihao
+ * https://gitee.com/yezhihao/jt808-server
+ */
+public class JTMessagePushAdapterTest {
+
+    @Test
+    public void testAttributesStayUnparsed() {
+        SSEService sseService = Mockito.mock(SSEService.class);
+        Session session = Mockito.mock(Session.class);
+        DeviceDO device = new DeviceDO();
+        Mockito.when(session.isRegistered()).thenReturn(true);
+        Mockito.when(session.getAttribute(SessionKey.Device)).thenReturn(device);
+
+        JTMessageEncoder encoder = new JTMessageEncoder("org.carm.protocol");
+        JTMessageDecoder decoder = new JTMessageDecoder("org.carm.protocol").setLazyAttributes(true);
+        JTMessagePushAdapter adapter = new JTMessagePushAdapter(encoder, decoder, sseService);
+
+        ByteBuf frame = encoder.encode(T0200());
+        T0200 message;
+        try {
+            message = (T0200) adapter.decode(frame, session);
+        } finally {
+            frame.release();
+        }
+        assertNotNull(message.getAttributeBytes(), "decodeLog");
+        Mockito.verify(sseService, Mockito.never()).send(Mockito.any(), Mockito.any());
+
+        assertTrue(new JTHandlerInterceptor().beforeHandle(message, session));
+        assertNotNull(message.getAttributeBytes(), "beforeHandle");
+        assertEquals(11L, device.getLocation().getAttributeLong(AttributeKey.Mileage));
+        assertNotNull(device.getLocation().getAttributeBytes(), "DeviceDO");
+    }
+
+    private static T0200 T0200() {
+        Map<Integer, Object> attributes = new TreeMap<>();
+        attributes.put(AttributeKey.Mileage, 11);
+        attributes.put(AttributeKey.Fuel, 22);
+        T0200 message = new T0200();
+        message.setMessageId(JT808.位置信息汇报);
+        message.setClientId("123456789012");
+        message.setSerialNo(1);
+        message.setLatitude(123456);
+        message.setLongitude(654321);
+        message.setDeviceTime(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        message.setAttributes(attributes);
+        return message;
+    }
+}